@@ -93,7 +93,8 @@ public class DataConsistencyHandler implements RequestHandler<Map<String, Object
      * Checks data consistency between RDS and S3
      */
     private boolean checkDataConsistency(Context context) {
-        String dbQuery = "SELECT file_name FROM image_metadata";
+        // Deduplicated images are stored under their content key instead of their name
+        String dbQuery = "SELECT COALESCE(object_key, file_name) AS file_name FROM image_metadata";
         String s3BucketName = System.getenv("S3_BUCKET");
 
         Set<String> dbFileNames = getFileNamesFromDb(dbQuery, context);
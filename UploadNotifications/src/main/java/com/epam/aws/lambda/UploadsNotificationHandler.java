@@ -70,7 +70,7 @@ public class UploadsNotificationHandler implements RequestHandler<SQSEvent, Stri
         return startIndex;
     }
 
-    private String extractFileExtension(String messageBody) {
+    static String extractFileExtension(String messageBody) {
         // Check if the message body is null or contains only whitespace
         int startIndex = getStartIndex(messageBody);
         // Extract the extension by splitting at the newline and trimming any extra spaces
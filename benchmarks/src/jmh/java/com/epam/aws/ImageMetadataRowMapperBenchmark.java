@@ -0,0 +1,67 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps one image_metadata row, as done for every metadata lookup and every listed row.
+ * The row comes from an in-memory ResultSet, so the time of a real driver's column lookups is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ImageMetadataRowMapperBenchmark {
+
+    private final ImageMetadataRowMapper rowMapper = new ImageMetadataRowMapper();
+    private ResultSet resultSet;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 42L);
+        row.put("file_name", "holiday/beach-sunset.jpg");
+        row.put("file_size", 2_483_112L);
+        row.put("file_extension", "jpg");
+        row.put("last_update_date", Timestamp.valueOf("2024-06-01 12:30:00"));
+        row.put("e_tag", "\"9b2cf535f27731c974343645a3985328\"");
+        row.put("content_hash", "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        row.put("object_key", "_content/ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        row.put("image_format", "jpeg");
+        row.put("width", 4032);
+        row.put("height", 3024);
+        resultSet = resultSet(row);
+    }
+
+    @Benchmark
+    public ImageMetadata mapRow() throws SQLException {
+        return rowMapper.mapRow(resultSet, 0);
+    }
+
+    // Answers the typed getters the row mapper uses from a map of column values
+    private static ResultSet resultSet(Map<String, Object> row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = row.get((String) args[0]);
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getString", "getTimestamp" -> value;
+                        case "getObject" -> ((Class<?>) args[1]).cast(value);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
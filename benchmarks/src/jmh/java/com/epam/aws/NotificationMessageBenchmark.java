@@ -0,0 +1,29 @@
+package com.epam.aws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the upload notification built for every uploaded image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotificationMessageBenchmark {
+
+    private String fileName = "holiday/beach-sunset.jpg";
+    private long fileSize = 2_483_112L;
+    private String fileExtension = "jpg";
+    private String downloadUrl = "http://images.example.com/images/download/holiday/beach-sunset.jpg";
+
+    @Benchmark
+    public String notificationMessage() {
+        return ImageService.notificationMessage(fileName, fileSize, fileExtension, downloadUrl);
+    }
+}
@@ -0,0 +1,41 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done for every pending subscription by the scheduled filter check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SubscriptionBenchmark {
+
+    private List<String> messageTypes;
+    private SubscriptionEntity subscription;
+
+    @Setup
+    public void setUp() {
+        messageTypes = List.of("jpg", "jpeg", "png", "gif", "webp");
+        subscription = new SubscriptionEntity("user@example.com", messageTypes);
+    }
+
+    @Benchmark
+    public String filterPolicy() {
+        return SubscriptionService.filterPolicy(messageTypes);
+    }
+
+    @Benchmark
+    public List<String> getMessageTypes() {
+        return subscription.getMessageTypes();
+    }
+}
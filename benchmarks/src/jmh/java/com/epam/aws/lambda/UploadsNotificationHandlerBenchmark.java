@@ -0,0 +1,35 @@
+package com.epam.aws.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the extension out of every SQS message the notification function forwards to SNS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UploadsNotificationHandlerBenchmark {
+
+    private String messageBody = """
+            Image uploaded successfully!
+
+            Details:
+            - Name: holiday/beach-sunset.jpg
+            - Size: 2483112 bytes
+            - Extension: JPG
+
+            You can download the image using the following link:
+            http://images.example.com/images/download/holiday/beach-sunset.jpg""";
+
+    @Benchmark
+    public String extractFileExtension() {
+        return UploadsNotificationHandler.extractFileExtension(messageBody);
+    }
+}
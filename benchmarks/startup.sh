@@ -0,0 +1,72 @@
+#!/bin/bash
+# Measures time-to-ready of the web application: the wall clock time from launching the JVM until
+# /actuator/health answers UP. Every mode is started RUNS times and the median is reported.
+#
+#   benchmarks/startup.sh [jar] [runs]
+#
+# Run it where the application can start normally, i.e. with app_env.sh sourced on an instance.
+# Modes whose prerequisites are missing are skipped:
+#   jar      java -jar on the boot jar, as before
+#   cds      extracted jar with a class data sharing archive, trained first
+#   aot      boot jar built with gradle build -Paot, in AOT mode
+#   aot+cds  both
+set -u
+
+JAR=$(realpath "${1:-build/libs/AwsDeveloperProject.jar}")
+RUNS=${2:-5}
+PORT=${SERVER_PORT:-8080}
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+start_and_wait() {
+  local start end
+  start=$(date +%s%N)
+  "$@" > "$WORK_DIR/app.log" 2>&1 &
+  local pid=$!
+  until curl -sf "http://localhost:$PORT/actuator/health" 2>/dev/null | grep -q '"UP"'; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "failed" && cat "$WORK_DIR/app.log" >&2
+      return 1
+    fi
+    sleep 0.05
+  done
+  end=$(date +%s%N)
+  kill "$pid" && wait "$pid" 2>/dev/null
+  echo $(( (end - start) / 1000000 ))
+}
+
+measure() {
+  local mode=$1
+  shift
+  local times=()
+  for _ in $(seq "$RUNS"); do
+    local ms
+    ms=$(start_and_wait "$@") || return
+    times+=("$ms")
+  done
+  local median
+  median=$(printf '%s\n' "${times[@]}" | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p")
+  printf '%-8s median %6d ms   runs: %s\n' "$mode" "$median" "${times[*]}"
+}
+
+AOT=false
+if jar tf "$JAR" | grep -q '__ApplicationContextInitializer.class'; then
+  AOT=true
+fi
+
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK_DIR/extracted" > /dev/null
+EXTRACTED="$WORK_DIR/extracted/$(basename "$JAR")"
+(cd "$WORK_DIR/extracted" && java -XX:ArchiveClassesAtExit=jar.jsa -Dspring.context.exit=onRefresh \
+    -jar "$EXTRACTED" > "$WORK_DIR/training.log" 2>&1)
+
+echo "Time to ready of $JAR, $RUNS runs per mode"
+measure jar java -jar "$JAR"
+measure cds java -XX:SharedArchiveFile="$WORK_DIR/extracted/jar.jsa" -jar "$EXTRACTED"
+if [ "$AOT" = "true" ]; then
+  (cd "$WORK_DIR/extracted" && java -XX:ArchiveClassesAtExit=aot.jsa -Dspring.aot.enabled=true \
+      -Dspring.context.exit=onRefresh -jar "$EXTRACTED" > "$WORK_DIR/training.log" 2>&1)
+  measure aot java -Dspring.aot.enabled=true -jar "$JAR"
+  measure aot+cds java -Dspring.aot.enabled=true -XX:SharedArchiveFile="$WORK_DIR/extracted/aot.jsa" -jar "$EXTRACTED"
+else
+  echo "aot      skipped, build the jar with gradle build -Paot to compare"
+fi
@@ -0,0 +1,98 @@
+package com.epam.aws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit on concurrent requests that follows their latency, after the gradient algorithm of Netflix's
+ * concurrency-limits. A long-term average response time is the baseline. While recent responses stay within
+ * {@code tolerance} times the baseline, every sample grows the limit by about its square root; once they get
+ * slower, the limit shrinks by the ratio, by at most half per sample. {@code smoothing} damps each step.
+ * Samples taken while less than half of the limit is in use are ignored, so a quiet period cannot raise it.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    // Response times are averaged over about this many samples
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    // Guarded by this
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (tolerance < 1 || smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("Tolerance must be at least 1 and smoothing in (0, 1]");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Takes a permit unless the limit is reached. Every successful call must be followed by {@link #release}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the permit. Only successful requests are sampled: failures are often fast and would raise the limit.
+     */
+    public void release(long rttNanos, boolean success) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        if (success && rttNanos > 0) {
+            onSample(rttNanos, inFlightBeforeRelease);
+        }
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightBeforeRelease) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+        // After a long overload the baseline has drifted up; pull it back instead of waiting for the average
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        double current = limit;
+        if (inFlightBeforeRelease < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = current * gradient + Math.sqrt(current);
+        next = current * (1 - smoothing) + next * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,87 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the connection pool metrics the AWS SDK collects per call to Micrometer, tagged by service.
+ * Leased and pending connections are sampled at the start of every call, so their maximum shows how close
+ * the pool came to {@value #MAX_GAUGE}, and {@value #ACQUIRE_TIMER} shows how long calls waited for a connection.
+ */
+@Component
+public class AwsClientMetricPublisher implements MetricPublisher {
+
+    static final String ACQUIRE_TIMER = "aws.http.pool.acquire";
+    static final String LEASED_SUMMARY = "aws.http.pool.leased";
+    static final String PENDING_SUMMARY = "aws.http.pool.pending";
+    static final String MAX_GAUGE = "aws.http.pool.max";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, PoolMeters> pools = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AwsClientMetricPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Called by the SDK on the calling thread once per API call, so it only updates meters.
+     */
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        String service = metricCollection.metricValues(CoreMetric.SERVICE_ID).stream()
+                .findFirst()
+                .orElse("unknown");
+        record(metricCollection, pools.computeIfAbsent(service, this::poolMeters));
+    }
+
+    // The HTTP metrics are reported by a child collection of every attempt of the call
+    private void record(MetricCollection collection, PoolMeters meters) {
+        collection.metricValues(HttpMetric.CONCURRENCY_ACQUIRE_DURATION).forEach(meters.acquire()::record);
+        collection.metricValues(HttpMetric.LEASED_CONCURRENCY).forEach(meters.leased()::record);
+        collection.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES).forEach(meters.pending()::record);
+        collection.metricValues(HttpMetric.MAX_CONCURRENCY).forEach(meters.max()::set);
+        collection.children().forEach(child -> record(child, meters));
+    }
+
+    @Override
+    public void close() {
+        // Meters stay registered with the application's registry
+    }
+
+    private PoolMeters poolMeters(String service) {
+        AtomicInteger max = new AtomicInteger();
+        Gauge.builder(MAX_GAUGE, max, AtomicInteger::get)
+                .tag("service", service)
+                .register(meterRegistry);
+        return new PoolMeters(
+                Timer.builder(ACQUIRE_TIMER)
+                        .tag("service", service)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                DistributionSummary.builder(LEASED_SUMMARY)
+                        .baseUnit("connections")
+                        .tag("service", service)
+                        .register(meterRegistry),
+                DistributionSummary.builder(PENDING_SUMMARY)
+                        .baseUnit("acquires")
+                        .tag("service", service)
+                        .register(meterRegistry),
+                max);
+    }
+
+    private record PoolMeters(Timer acquire, DistributionSummary leased, DistributionSummary pending, AtomicInteger max) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds load on the upload and download endpoints before it piles up in the heap and the S3 connection pool.
+ * Each endpoint group has its own {@link AdaptiveConcurrencyLimit}; a request over the limit is answered with
+ * 503 and {@code Retry-After} at once, before its body is read. Streamed downloads hold their permit until the
+ * response is complete. The limits, requests in flight and rejections are published as
+ * {@code images.concurrency.*} metrics tagged with the endpoint.
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    static final String UPLOAD = "upload";
+    static final String DOWNLOAD = "download";
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimit uploadLimit;
+    private final AdaptiveConcurrencyLimit downloadLimit;
+    private final String retryAfterSeconds;
+    private final Counter uploadRejections;
+    private final Counter downloadRejections;
+
+    @Autowired
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${images.concurrency.enabled:true}") boolean enabled,
+                                  @Value("${images.concurrency.upload.initial-limit:20}") int uploadInitialLimit,
+                                  @Value("${images.concurrency.upload.min-limit:2}") int uploadMinLimit,
+                                  @Value("${images.concurrency.upload.max-limit:200}") int uploadMaxLimit,
+                                  @Value("${images.concurrency.download.initial-limit:100}") int downloadInitialLimit,
+                                  @Value("${images.concurrency.download.min-limit:10}") int downloadMinLimit,
+                                  @Value("${images.concurrency.download.max-limit:1000}") int downloadMaxLimit,
+                                  @Value("${images.concurrency.tolerance:1.5}") double tolerance,
+                                  @Value("${images.concurrency.smoothing:0.2}") double smoothing,
+                                  @Value("${images.concurrency.retry-after:PT1S}") Duration retryAfter) {
+        this(meterRegistry, enabled,
+                new AdaptiveConcurrencyLimit(uploadInitialLimit, uploadMinLimit, uploadMaxLimit, tolerance, smoothing),
+                new AdaptiveConcurrencyLimit(downloadInitialLimit, downloadMinLimit, downloadMaxLimit, tolerance, smoothing),
+                retryAfter);
+    }
+
+    ConcurrencyLimitFilter(MeterRegistry meterRegistry, boolean enabled, AdaptiveConcurrencyLimit uploadLimit,
+                           AdaptiveConcurrencyLimit downloadLimit, Duration retryAfter) {
+        this.enabled = enabled;
+        this.uploadLimit = uploadLimit;
+        this.downloadLimit = downloadLimit;
+        // Retry-After is in whole seconds
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        this.uploadRejections = registerMeters(meterRegistry, UPLOAD, uploadLimit);
+        this.downloadRejections = registerMeters(meterRegistry, DOWNLOAD, downloadLimit);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || endpoint(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String endpoint = endpoint(request);
+        AdaptiveConcurrencyLimit limit = UPLOAD.equals(endpoint) ? uploadLimit : downloadLimit;
+        if (!limit.tryAcquire()) {
+            (UPLOAD.equals(endpoint) ? uploadRejections : downloadRejections).increment();
+            log.debug("Rejected {} {} at a concurrency limit of {}", request.getMethod(), request.getRequestURI(), limit.getLimit());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Too many concurrent " + endpoint + "s, retry later");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean releasedLater = false;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+            if (request.isAsyncStarted()) {
+                // The response body is streamed after this thread returns
+                request.getAsyncContext().addListener(new ReleasingListener(limit, start));
+                releasedLater = true;
+            }
+        } finally {
+            if (!releasedLater) {
+                limit.release(System.nanoTime() - start, !failed && response.getStatus() < 500);
+            }
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("POST".equals(request.getMethod()) && (path.equals("/images/upload") || path.equals("/images/upload/batch"))) {
+            return UPLOAD;
+        }
+        if ("GET".equals(request.getMethod()) && path.startsWith("/images/download/")) {
+            return DOWNLOAD;
+        }
+        return null;
+    }
+
+    private static Counter registerMeters(MeterRegistry meterRegistry, String endpoint, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("images.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("images.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return Counter.builder("images.concurrency.rejected")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    // onComplete also follows a timeout or an error, so the permit is released by whichever comes first
+    private static final class ReleasingListener implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimit limit;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingListener(AdaptiveConcurrencyLimit limit, long start) {
+            this.limit = limit;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            boolean success = !(event.getSuppliedResponse() instanceof HttpServletResponse response)
+                    || response.getStatus() < 500;
+            release(success);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Re-register for the next async cycle
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - start, success);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.epam.aws;
 
+import org.springframework.context.annotation.Lazy;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -8,7 +9,7 @@ public class DataConsistencyController {
 
     private final DataConsistencyService dataConsistencyService;
 
-    public DataConsistencyController(DataConsistencyService dataConsistencyService) {
+    public DataConsistencyController(@Lazy DataConsistencyService dataConsistencyService) {
         this.dataConsistencyService = dataConsistencyService;
     }
 
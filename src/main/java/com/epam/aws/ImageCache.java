@@ -0,0 +1,336 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of image bytes on local instance storage.
+ * Each entry is a file that is memory-mapped once it is complete, so hits are served from the page cache.
+ * The total size is capped in bytes and the least recently used entries are evicted first.
+ * Entries remember the S3 ETag they were filled with and must be revalidated after {@code revalidateAfter}.
+ */
+@Slf4j
+@Component
+public class ImageCache {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Duration revalidateAfter;
+    private final Clock clock;
+
+    // Access-ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Writer> activeWriters = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public ImageCache(@Value("${images.cache.enabled:false}") boolean enabled,
+                      @Value("${images.cache.directory:${java.io.tmpdir}/image-cache}") Path directory,
+                      @Value("${images.cache.max-bytes:1073741824}") long maxBytes,
+                      @Value("${images.cache.max-entry-bytes:67108864}") long maxEntryBytes,
+                      @Value("${images.cache.revalidate-after:PT1M}") Duration revalidateAfter,
+                      MeterRegistry meterRegistry) {
+        this(enabled, directory, maxBytes, maxEntryBytes, revalidateAfter, meterRegistry, Clock.systemUTC());
+    }
+
+    ImageCache(boolean enabled, Path directory, long maxBytes, long maxEntryBytes, Duration revalidateAfter,
+               MeterRegistry meterRegistry, Clock clock) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        // A single mapping cannot exceed 2 GiB
+        this.maxEntryBytes = Math.min(Math.min(maxEntryBytes, maxBytes), Integer.MAX_VALUE);
+        this.revalidateAfter = revalidateAfter;
+        this.clock = clock;
+
+        FunctionCounter.builder("images.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("images.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("images.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("images.cache.size", this, ImageCache::totalBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("images.cache.entries", this, ImageCache::entryCount).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        // Entries are not persisted across restarts, so anything left over is stale
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.forEach(ImageCache::deleteQuietly);
+        }
+        log.info("Image cache enabled in {} with a limit of {} bytes", directory, maxBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cached image for the key or {@code null}. Counts a hit or a miss.
+     */
+    public CachedImage get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CachedImage image;
+        synchronized (this) {
+            image = entries.get(key);
+        }
+        (image == null ? misses : hits).incrementAndGet();
+        return image;
+    }
+
+    /**
+     * Returns {@code true} when the entry was validated against S3 recently enough to be served without a check.
+     */
+    public boolean isFresh(CachedImage image) {
+        return clock.millis() - image.validatedAt < revalidateAfter.toMillis();
+    }
+
+    public void markValidated(CachedImage image) {
+        image.validatedAt = clock.millis();
+    }
+
+    public void invalidate(String key) {
+        if (!enabled) {
+            return;
+        }
+        Writer writer = activeWriters.remove(key);
+        if (writer != null) {
+            writer.discarded = true;
+        }
+        CachedImage removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                totalBytes -= removed.size;
+            }
+        }
+        if (removed != null) {
+            deleteQuietly(removed.path);
+        }
+    }
+
+    /**
+     * Starts filling an entry for the key, or returns {@code null} when the object should not be cached.
+     * Only one writer per key is active at a time; an invalidation of the key discards it.
+     */
+    public Writer newWriter(String key, String eTag, Long contentLength) {
+        if (!enabled || eTag == null || contentLength == null || contentLength > maxEntryBytes) {
+            return null;
+        }
+        Writer writer;
+        try {
+            writer = new Writer(key, eTag, Files.createTempFile(directory, "image-", ".cache"));
+        } catch (IOException e) {
+            log.warn("Could not create a cache file for {}", key, e);
+            return null;
+        }
+        if (activeWriters.putIfAbsent(key, writer) != null) {
+            writer.abort();
+            return null;
+        }
+        return writer;
+    }
+
+    private void commit(Writer writer, MappedByteBuffer buffer, long size) {
+        if (!activeWriters.remove(writer.key, writer) || writer.discarded) {
+            deleteQuietly(writer.path);
+            return;
+        }
+        CachedImage image = new CachedImage(writer.eTag, writer.path, buffer, size, clock.millis());
+        CachedImage replaced;
+        synchronized (this) {
+            replaced = entries.put(writer.key, image);
+            totalBytes += size - (replaced == null ? 0 : replaced.size);
+            evictOverflow();
+        }
+        if (replaced != null) {
+            deleteQuietly(replaced.path);
+        }
+    }
+
+    // Called with the monitor held
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedImage>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedImage eldest = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= eldest.size;
+            evictions.incrementAndGet();
+            // Readers that still hold the mapping keep working after the file is unlinked
+            deleteQuietly(eldest.path);
+        }
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    long hitCount() {
+        return hits.get();
+    }
+
+    long missCount() {
+        return misses.get();
+    }
+
+    long evictionCount() {
+        return evictions.get();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete cache file {}", path, e);
+        }
+    }
+
+    /**
+     * A complete, memory-mapped cache entry.
+     */
+    public static final class CachedImage {
+        private final String eTag;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final long size;
+        private volatile long validatedAt;
+
+        private CachedImage(String eTag, Path path, MappedByteBuffer buffer, long size, long validatedAt) {
+            this.eTag = eTag;
+            this.path = path;
+            this.buffer = buffer;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+
+        public String eTag() {
+            return eTag;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Writes {@code length} bytes starting at {@code offset} to the output stream.
+         */
+        public void writeTo(OutputStream outputStream, long offset, long length) throws IOException {
+            // Each reader works on its own view of the shared mapping
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) offset).limit((int) (offset + length));
+            WritableByteChannel channel = Channels.newChannel(outputStream);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    /**
+     * Copies an object into the cache while it is being streamed to a client.
+     * Write failures only disable caching of this object; they are never propagated.
+     */
+    public final class Writer {
+        private final String key;
+        private final String eTag;
+        private final Path path;
+        private FileChannel channel;
+        private long written;
+        private boolean failed;
+        private volatile boolean discarded;
+
+        private Writer(String key, String eTag, Path path) throws IOException {
+            this.key = key;
+            this.eTag = eTag;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        public void write(byte[] bytes, int offset, int length) {
+            if (failed || discarded) {
+                return;
+            }
+            try {
+                ByteBuffer source = ByteBuffer.wrap(bytes, offset, length);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                written += length;
+                if (written > maxEntryBytes) {
+                    abort();
+                }
+            } catch (IOException e) {
+                log.warn("Could not write cache file for {}", key, e);
+                abort();
+            }
+        }
+
+        public void commit() {
+            if (failed) {
+                return;
+            }
+            try (FileChannel fileChannel = channel) {
+                MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, written);
+                channel = null;
+                ImageCache.this.commit(this, buffer, written);
+            } catch (IOException e) {
+                log.warn("Could not map cache file for {}", key, e);
+                abort();
+            }
+        }
+
+        public void abort() {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            activeWriters.remove(key, this);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Could not close cache file for {}", key, e);
+                }
+            }
+            deleteQuietly(path);
+        }
+    }
+}
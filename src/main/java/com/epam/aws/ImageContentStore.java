@@ -0,0 +1,243 @@
+package com.epam.aws;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.core.exception.SdkException;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed storage of image bytes.
+ * Objects are stored once under {@code _content/<sha-256>} and shared by every image with the same bytes;
+ * image_content counts the references. Objects without references are deleted from S3 only after the transaction
+ * that released them has committed, so a rollback never leaves a row pointing at a deleted object.
+ * Deletes that fail, or never run because the process stopped, are retried by {@link #reapUnreferenced()}.
+ */
+@Slf4j
+@Component
+public class ImageContentStore {
+
+    static final String CONTENT_PREFIX = "_content/";
+
+    // DeleteObjects accepts at most 1000 keys per request
+    private static final int MAX_DELETE_OBJECTS_KEYS = 1000;
+
+    private final S3Client s3Client;
+    private final JdbcTemplate jdbcTemplate;
+    private final S3MultipartUploader s3MultipartUploader;
+    private final StageMetrics stageMetrics;
+    private final TransactionOperations transactionOperations;
+    private final ImageRenditionService renditionService;
+    private final int reaperBatchSize;
+    private final String bucketName;
+
+    @Autowired
+    public ImageContentStore(S3Client s3Client, JdbcTemplate jdbcTemplate, S3MultipartUploader s3MultipartUploader,
+                             StageMetrics stageMetrics, TransactionOperations transactionOperations,
+                             ImageRenditionService renditionService,
+                             @Value("${images.content-reaper.batch-size:100}") int reaperBatchSize) {
+        this.s3Client = s3Client;
+        this.jdbcTemplate = jdbcTemplate;
+        this.s3MultipartUploader = s3MultipartUploader;
+        this.stageMetrics = stageMetrics;
+        this.transactionOperations = transactionOperations;
+        this.renditionService = renditionService;
+        this.reaperBatchSize = reaperBatchSize;
+        this.bucketName = System.getenv("S3_BUCKET_NAME");
+    }
+
+    /**
+     * Stores the file, or takes another reference to an identical object that is already stored.
+     * The hash is computed in a streaming pass over the upload the servlet container has spooled to disk,
+     * so the S3 put is skipped entirely for known content.
+     */
+    public StoredContent store(MultipartFile file) throws IOException {
+        String contentHash;
+        try (InputStream inputStream = file.getInputStream()) {
+            contentHash = hash(inputStream);
+        }
+        String objectKey = CONTENT_PREFIX + contentHash;
+
+        // Taking the reference before anything else keeps the object from being deleted. A row without references
+        // still has its object: objects are deleted under the row lock together with their row.
+        if (jdbcTemplate.update("UPDATE image_content SET ref_count = GREATEST(ref_count, 0) + 1 WHERE content_hash = ?",
+                contentHash) > 0) {
+            String eTag = jdbcTemplate.queryForObject("SELECT e_tag FROM image_content WHERE content_hash = ?",
+                    String.class, contentHash);
+            log.debug("Upload of {} matches stored content {}", file.getOriginalFilename(), contentHash);
+            return new StoredContent(contentHash, objectKey, eTag, false);
+        }
+
+        String eTag;
+        try (InputStream inputStream = file.getInputStream()) {
+            eTag = stageMetrics.record(StageMetrics.S3_PUT,
+                    () -> s3MultipartUploader.upload(bucketName, objectKey, inputStream, file.getSize()));
+        }
+        // A concurrent upload of the same bytes may have inserted the row meanwhile; both puts wrote the same object
+        jdbcTemplate.update("INSERT INTO image_content (content_hash, object_key, size, e_tag, ref_count) VALUES (?, ?, ?, ?, 1)"
+                        + " ON DUPLICATE KEY UPDATE ref_count = GREATEST(ref_count, 0) + 1, e_tag = VALUES(e_tag)",
+                contentHash, objectKey, file.getSize(), eTag);
+        return new StoredContent(contentHash, objectKey, eTag, true);
+    }
+
+    /**
+     * Drops one reference per hash, a hash may be listed several times. Must run inside the transaction that
+     * deletes the referencing rows; nothing is deleted from S3 here, so a rollback restores a consistent state.
+     * Pass the result to {@link #deleteUnreferenced} once the transaction has committed.
+     *
+     * @return object keys that have no references left
+     */
+    public List<String> release(Collection<String> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Long> references = contentHashes.stream()
+                .collect(Collectors.groupingBy(Function.identity(), LinkedHashMap::new, Collectors.counting()));
+        jdbcTemplate.batchUpdate("UPDATE image_content SET ref_count = ref_count - ? WHERE content_hash = ?",
+                references.entrySet().stream()
+                        .map(reference -> new Object[]{reference.getValue(), reference.getKey()})
+                        .toList());
+
+        List<String> hashes = new ArrayList<>(references.keySet());
+        return jdbcTemplate.queryForList("SELECT object_key FROM image_content WHERE ref_count <= 0"
+                + " AND content_hash IN (" + placeholders(hashes.size()) + ")", String.class, hashes.toArray());
+    }
+
+    /**
+     * Deletes the objects, and their renditions, that still have no references. Each group is deleted in its own
+     * transaction holding the row locks, so an upload of the same content waits and then stores the object again.
+     * Groups that fail are left to {@link #reapUnreferenced()}.
+     *
+     * @return object keys that were deleted
+     */
+    public List<String> deleteUnreferenced(List<String> objectKeys) {
+        List<String> deleted = new ArrayList<>();
+        for (int from = 0; from < objectKeys.size(); from += MAX_DELETE_OBJECTS_KEYS) {
+            List<String> chunk = objectKeys.subList(from, Math.min(from + MAX_DELETE_OBJECTS_KEYS, objectKeys.size()));
+            try {
+                deleted.addAll(transactionOperations.execute(status -> deleteLocked(jdbcTemplate.queryForList(
+                        "SELECT object_key FROM image_content WHERE ref_count <= 0 AND object_key IN ("
+                                + placeholders(chunk.size()) + ") FOR UPDATE", String.class, chunk.toArray()))));
+            } catch (DataAccessException | TransactionException | SdkException e) {
+                log.warn("Could not delete {} unreferenced content objects, leaving them to the reaper", chunk.size(), e);
+            }
+        }
+        renditionService.deleteRenditions(deleted);
+        return deleted;
+    }
+
+    /**
+     * Deletes objects left without references by deletes that failed after their transaction committed.
+     * Rows are claimed with {@code FOR UPDATE SKIP LOCKED} (MySQL 8+), so rows still locked by a release or
+     * a delete in progress are skipped, and several instances never delete the same objects.
+     */
+    @Scheduled(initialDelayString = "${images.content-reaper.initial-delay:PT2M}",
+            fixedDelayString = "${images.content-reaper.interval:PT10M}")
+    public void reapUnreferenced() {
+        try {
+            List<String> deleted;
+            int reaped = 0;
+            do {
+                deleted = transactionOperations.execute(status -> deleteLocked(jdbcTemplate.queryForList(
+                        "SELECT object_key FROM image_content WHERE ref_count <= 0 LIMIT ? FOR UPDATE SKIP LOCKED",
+                        String.class, reaperBatchSize)));
+                renditionService.deleteRenditions(deleted);
+                reaped += deleted.size();
+            } while (deleted.size() == reaperBatchSize);
+            if (reaped > 0) {
+                log.info("Reaped {} unreferenced content objects", reaped);
+            }
+        } catch (DataAccessException | TransactionException | SdkException e) {
+            // The remaining rows are picked up by the next run
+            log.warn("Could not reap unreferenced content", e);
+        }
+    }
+
+    // The rows are locked by the caller's transaction; rows of objects S3 refused to delete are kept for the reaper
+    private List<String> deleteLocked(List<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return List.of();
+        }
+        List<String> deleted = deleteObjects(objectKeys);
+        if (!deleted.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM image_content WHERE object_key IN (" + placeholders(deleted.size()) + ")",
+                    deleted.toArray());
+        }
+        return deleted;
+    }
+
+    static boolean isContentKey(String key) {
+        return key.startsWith(CONTENT_PREFIX);
+    }
+
+    static String hash(InputStream inputStream) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (DigestInputStream digestStream = new DigestInputStream(inputStream, digest)) {
+            digestStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Failing calls throw, so the caller's transaction rolls back and the rows are kept
+    private List<String> deleteObjects(List<String> keys) {
+        DeleteObjectsResponse response = stageMetrics.record(StageMetrics.S3_DELETE, () -> s3Client.deleteObjects(
+                DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder()
+                                .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                                .quiet(true)
+                                .build())
+                        .build()));
+        Set<String> failed = new HashSet<>();
+        for (S3Error error : response.errors()) {
+            log.warn("Could not delete unreferenced content {}: {} {}", error.key(), error.code(), error.message());
+            failed.add(error.key());
+        }
+        return keys.stream().filter(key -> !failed.contains(key)).toList();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * @param created whether this upload wrote a new object, as opposed to referencing an existing one
+     */
+    public record StoredContent(String contentHash, String objectKey, String eTag, boolean created) {
+    }
+}
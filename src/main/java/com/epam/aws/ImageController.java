@@ -1,31 +1,54 @@
 
 package com.epam.aws;
 
+import com.epam.aws.model.BulkDeleteRequest;
+import com.epam.aws.model.BulkDeleteResult;
 import com.epam.aws.model.ImageMetadata;
+import com.epam.aws.model.ImageMetadataFilter;
+import com.epam.aws.model.UploadResult;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/images")
 public class ImageController {
     private final ImageService imageService;
+    private final ImageMetadataListingService imageMetadataListingService;
 
     @Autowired
-    public ImageController(ImageService imageService){
+    public ImageController(ImageService imageService, ImageMetadataListingService imageMetadataListingService){
         this.imageService = imageService;
+        this.imageMetadataListingService = imageMetadataListingService;
     }
 
     @GetMapping("/download/{imageName}")
-    public ResponseEntity<Resource> downloadImage(@PathVariable String imageName) {
-        return imageService.downloadImage(imageName);
+    public ResponseEntity<StreamingResponseBody> downloadImage(@PathVariable String imageName,
+                                                               @RequestHeader HttpHeaders headers) {
+        return imageService.downloadImage(imageName, headers);
+    }
+
+    @GetMapping(value = "/download/{imageName}", params = "w")
+    public ResponseEntity<StreamingResponseBody> downloadRendition(@PathVariable String imageName,
+                                                                   @RequestParam("w") int width,
+                                                                   @RequestHeader HttpHeaders headers) {
+        return imageService.downloadRendition(imageName, width, headers);
+    }
+
+    @GetMapping("/metadata")
+    public ResponseEntity<StreamingResponseBody> listImageMetadata(ImageMetadataFilter filter) {
+        return imageMetadataListingService.listImageMetadata(filter);
     }
 
     @GetMapping("/metadata/{imageName}")
-    public ResponseEntity<ImageMetadata> getImageMetadata(@PathVariable String imageName) {
-        return imageService.getImageMetadata(imageName);
+    public ResponseEntity<ImageMetadata> getImageMetadata(@PathVariable String imageName,
+                                                          @RequestHeader HttpHeaders headers) {
+        return imageService.getImageMetadata(imageName, headers);
     }
 
     @GetMapping("/metadata/random")
@@ -33,13 +56,28 @@ public class ImageController {
         return imageService.getRandomImageMetadata();
     }
 
+    @GetMapping(value = "/metadata/random", params = "count")
+    public ResponseEntity<List<ImageMetadata>> getRandomImagesMetadata(@RequestParam int count) {
+        return imageService.getRandomImagesMetadata(count);
+    }
+
     @PostMapping("/upload")
     public ResponseEntity<String> uploadImage(@RequestParam("image") MultipartFile file) {
         return imageService.uploadImage(file);
     }
 
+    @PostMapping("/upload/batch")
+    public ResponseEntity<List<UploadResult>> uploadImages(@RequestParam("images") List<MultipartFile> files) {
+        return imageService.uploadImages(files);
+    }
+
     @DeleteMapping("/delete/{imageName}")
     public ResponseEntity<String> deleteImage(@PathVariable String imageName) {
         return imageService.deleteImage(imageName);
     }
+
+    @PostMapping("/delete/batch")
+    public ResponseEntity<BulkDeleteResult> deleteImages(@RequestBody BulkDeleteRequest request) {
+        return imageService.deleteImages(request);
+    }
 }
@@ -0,0 +1,132 @@
+package com.epam.aws;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Fills in format and dimensions of images uploaded before the header inspection existed.
+ * Only the first {@link ImageHeaderInspector#MAX_HEADER_BYTES} of every object are fetched with a ranged GET.
+ * Objects that are missing or not recognized are marked {@value #UNKNOWN_FORMAT}, so they are not fetched again.
+ * A run handles at most {@code max-batches-per-run} batches, so a large bucket is worked off over several runs.
+ * Rows are claimed with {@code FOR UPDATE SKIP LOCKED} (MySQL 8+), so several instances never read the same objects.
+ */
+@Slf4j
+@Component
+public class ImageHeaderBackfill {
+
+    static final String UNKNOWN_FORMAT = "unknown";
+
+    private static final String CLAIM_PENDING_SQL = "SELECT id, file_name, COALESCE(object_key, file_name) AS object_key"
+            + " FROM image_metadata WHERE image_format IS NULL ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String UPDATE_SQL = "UPDATE image_metadata SET image_format = ?, width = ?, height = ? WHERE id = ?";
+
+    private final S3Client s3Client;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final ImageMetadataCache metadataCache;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final String bucketName;
+
+    @Autowired
+    public ImageHeaderBackfill(S3Client s3Client, JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+                               ImageMetadataCache metadataCache,
+                               @Value("${images.header-backfill.batch-size:100}") int batchSize,
+                               @Value("${images.header-backfill.max-batches-per-run:10}") int maxBatchesPerRun) {
+        this.s3Client = s3Client;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.metadataCache = metadataCache;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.bucketName = System.getenv("S3_BUCKET_NAME");
+    }
+
+    /**
+     * Fills in the lowest pending rows batch by batch. Once every row is filled in, a run costs a single query.
+     */
+    @Scheduled(initialDelayString = "${images.header-backfill.initial-delay:PT1M}",
+            fixedDelayString = "${images.header-backfill.interval:PT5M}")
+    public void backfill() {
+        try {
+            int filled = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<String> fileNames = transactionOperations.execute(status -> backfillBatch());
+                // Invalidated after the commit, so a concurrent read cannot cache the row without its header again
+                fileNames.forEach(metadataCache::invalidate);
+                filled += fileNames.size();
+                if (fileNames.size() < batchSize) {
+                    break;
+                }
+            }
+            if (filled > 0) {
+                log.info("Filled in the image header of {} images", filled);
+            }
+        } catch (DataAccessException | TransactionException | SdkException e) {
+            // The remaining rows are picked up by the next run
+            log.warn("Could not backfill image headers", e);
+        }
+    }
+
+    /**
+     * Claims one batch of rows without a format and fills them in. The rows stay locked until the transaction
+     * commits, so uploads replacing one of them wait instead of being overwritten with the old header.
+     *
+     * @return names of the images that were updated
+     */
+    List<String> backfillBatch() {
+        List<PendingImage> pending = jdbcTemplate.query(CLAIM_PENDING_SQL,
+                (rs, rowNum) -> new PendingImage(rs.getLong("id"), rs.getString("file_name"), rs.getString("object_key")),
+                batchSize);
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<Object[]> updates = new ArrayList<>(pending.size());
+        for (PendingImage image : pending) {
+            ImageHeaderInspector.ImageHeader header = readHeader(image)
+                    .orElse(new ImageHeaderInspector.ImageHeader(UNKNOWN_FORMAT, null, null));
+            updates.add(new Object[]{header.format(), header.width(), header.height(), image.id()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        return pending.stream().map(PendingImage::fileName).toList();
+    }
+
+    private Optional<ImageHeaderInspector.ImageHeader> readHeader(PendingImage image) {
+        byte[] header;
+        try {
+            // S3 returns the whole object when it is shorter than the range
+            header = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(image.objectKey())
+                    .range("bytes=0-" + (ImageHeaderInspector.MAX_HEADER_BYTES - 1))
+                    .build()).asByteArray();
+        } catch (NoSuchKeyException e) {
+            log.warn("Image {} has metadata but no object {}", image.fileName(), image.objectKey());
+            return Optional.empty();
+        }
+        Optional<ImageHeaderInspector.ImageHeader> inspected = ImageHeaderInspector.inspect(header);
+        if (inspected.isEmpty()) {
+            log.warn("Image {} is not in a supported format", image.fileName());
+        }
+        return inspected;
+    }
+
+    record PendingImage(long id, String fileName, String objectKey) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.epam.aws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Identifies images from their first bytes, without decoding them.
+ * Recognizes PNG, JPEG, GIF, WebP and BMP by their magic bytes and reads the dimensions from the format header.
+ * Only {@link #MAX_HEADER_BYTES} are ever read; a JPEG whose frame header comes later is still accepted,
+ * just without dimensions.
+ */
+public final class ImageHeaderInspector {
+
+    // Covers the EXIF and ICC segments most JPEG files carry in front of the frame header
+    static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private ImageHeaderInspector() {
+    }
+
+    /**
+     * @param format lower case format name, e.g. {@code png}
+     * @param width  null when the header did not include it within the inspected bytes
+     * @param height null when the header did not include it within the inspected bytes
+     */
+    public record ImageHeader(String format, Integer width, Integer height) {
+    }
+
+    public static Optional<ImageHeader> inspect(InputStream inputStream) throws IOException {
+        return inspect(inputStream.readNBytes(MAX_HEADER_BYTES));
+    }
+
+    public static Optional<ImageHeader> inspect(byte[] header) {
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return png(header);
+        }
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of(jpeg(header));
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8') && header.length >= 10
+                && (header[4] == '7' || header[4] == '9') && header[5] == 'a') {
+            return Optional.of(new ImageHeader("gif", uint16LittleEndian(header, 6), uint16LittleEndian(header, 8)));
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return webp(header);
+        }
+        if (startsWith(header, 0, 'B', 'M')) {
+            return bmp(header);
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<ImageHeader> png(byte[] header) {
+        // The IHDR chunk always comes first
+        if (header.length < 24 || !startsWith(header, 12, 'I', 'H', 'D', 'R')) {
+            return Optional.empty();
+        }
+        return Optional.of(new ImageHeader("png", int32BigEndian(header, 16), int32BigEndian(header, 20)));
+    }
+
+    // Walks the marker segments up to the first start-of-frame, which holds the dimensions
+    private static ImageHeader jpeg(byte[] header) {
+        int position = 2;
+        while (position + 1 < header.length) {
+            if ((header[position] & 0xFF) != 0xFF) {
+                break;
+            }
+            int marker = header[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte
+                position++;
+                continue;
+            }
+            position += 2;
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // Standalone markers have no length
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA || position + 1 >= header.length) {
+                break;
+            }
+            int length = uint16BigEndian(header, position);
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame && position + 6 < header.length) {
+                return new ImageHeader("jpeg", uint16BigEndian(header, position + 5), uint16BigEndian(header, position + 3));
+            }
+            if (length < 2) {
+                break;
+            }
+            position += length;
+        }
+        return new ImageHeader("jpeg", null, null);
+    }
+
+    private static Optional<ImageHeader> webp(byte[] header) {
+        if (header.length < 30) {
+            return Optional.empty();
+        }
+        if (startsWith(header, 12, 'V', 'P', '8', 'X')) {
+            // Canvas size minus one, 24 bits each
+            return Optional.of(new ImageHeader("webp", uint24LittleEndian(header, 24) + 1, uint24LittleEndian(header, 27) + 1));
+        }
+        if (startsWith(header, 12, 'V', 'P', '8', 'L') && (header[20] & 0xFF) == 0x2F) {
+            // Width and height minus one, 14 bits each
+            int bits = (header[21] & 0xFF) | (header[22] & 0xFF) << 8 | (header[23] & 0xFF) << 16 | (header[24] & 0xFF) << 24;
+            return Optional.of(new ImageHeader("webp", (bits & 0x3FFF) + 1, (bits >>> 14 & 0x3FFF) + 1));
+        }
+        if (startsWith(header, 12, 'V', 'P', '8', ' ') && startsWith(header, 23, 0x9D, 0x01, 0x2A)) {
+            // Lossy key frame; the top two bits of each dimension are the scaling mode
+            return Optional.of(new ImageHeader("webp", uint16LittleEndian(header, 26) & 0x3FFF, uint16LittleEndian(header, 28) & 0x3FFF));
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<ImageHeader> bmp(byte[] header) {
+        if (header.length < 26) {
+            return Optional.empty();
+        }
+        int dibHeaderSize = int32LittleEndian(header, 14);
+        if (dibHeaderSize == 12) {
+            // OS/2 BITMAPCOREHEADER with 16 bit dimensions
+            return Optional.of(new ImageHeader("bmp", uint16LittleEndian(header, 18), uint16LittleEndian(header, 20)));
+        }
+        if (dibHeaderSize < 40) {
+            return Optional.empty();
+        }
+        // A negative height marks a top-down bitmap
+        return Optional.of(new ImageHeader("bmp", int32LittleEndian(header, 18), Math.abs(int32LittleEndian(header, 22))));
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int uint16BigEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    private static int int32BigEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    private static int uint16LittleEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24LittleEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16;
+    }
+
+    private static int int32LittleEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,150 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of image_metadata rows keyed by file name.
+ * Rows expire after {@code ttl}, "not found" results after the shorter {@code negativeTtl},
+ * and the least recently used entries are evicted once {@code maxSize} is reached.
+ * Other instances only see changes after the TTL, the local write path invalidates immediately.
+ */
+@Component
+public class ImageMetadataCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, Entry> entries;
+    // Loads in progress; an invalidation removes the token so the stale result is not stored
+    private final Map<String, Object> loading = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public ImageMetadataCache(@Value("${images.metadata-cache.enabled:true}") boolean enabled,
+                              @Value("${images.metadata-cache.max-size:10000}") int maxSize,
+                              @Value("${images.metadata-cache.ttl:PT5M}") Duration ttl,
+                              @Value("${images.metadata-cache.negative-ttl:PT10S}") Duration negativeTtl,
+                              MeterRegistry meterRegistry) {
+        this(enabled, maxSize, ttl, negativeTtl, meterRegistry, Clock.systemUTC());
+    }
+
+    ImageMetadataCache(boolean enabled, int maxSize, Duration ttl, Duration negativeTtl,
+                       MeterRegistry meterRegistry, Clock clock) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > ImageMetadataCache.this.maxSize;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+
+        FunctionCounter.builder("images.metadata.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("images.metadata.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("images.metadata.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("images.metadata.cache.size", this, ImageMetadataCache::size).register(meterRegistry);
+        Gauge.builder("images.metadata.cache.hit.ratio", this, ImageMetadataCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached row for the name, calling the loader on a miss or after expiry.
+     * The loader runs outside the cache lock.
+     */
+    public Optional<ImageMetadata> get(String fileName, Function<String, Optional<ImageMetadata>> loader) {
+        if (!enabled) {
+            return loader.apply(fileName);
+        }
+        Object token = new Object();
+        synchronized (this) {
+            Entry entry = entries.get(fileName);
+            if (entry != null && entry.expiresAt > clock.millis()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            misses.incrementAndGet();
+            loading.put(fileName, token);
+        }
+
+        Optional<ImageMetadata> value;
+        try {
+            value = loader.apply(fileName);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(fileName, token);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (loading.remove(fileName, token)) {
+                store(fileName, value);
+            }
+        }
+        return value;
+    }
+
+    public void put(ImageMetadata metadata) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            store(metadata.getFileName(), Optional.of(metadata));
+        }
+    }
+
+    public synchronized void invalidate(String fileName) {
+        loading.remove(fileName);
+        entries.remove(fileName);
+    }
+
+    // Called with the monitor held
+    private void store(String fileName, Optional<ImageMetadata> value) {
+        long expiresAt = clock.millis() + (value.isPresent() ? ttlMillis : negativeTtlMillis);
+        entries.put(fileName, new Entry(value, expiresAt));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    double hitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    long evictionCount() {
+        return evictions.get();
+    }
+
+    private record Entry(Optional<ImageMetadata> value, long expiresAt) {
+    }
+}
@@ -0,0 +1,199 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import com.epam.aws.model.ImageMetadataFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists image metadata with keyset pagination. Pages filtered by upload date are ordered by
+ * {@code (last_update_date, id)}, pages filtered only by size by {@code (file_size, id)} and all others by {@code id},
+ * so the range is read from its index in cursor order and a page stops after {@code limit} rows.
+ * Rows are written to the response as JDBC returns them, so a page is never held in memory as a list.
+ */
+@Service
+public class ImageMetadataListingService {
+
+    static final int MAX_LIMIT = 1000;
+
+    enum SortKey { ID, LAST_UPDATE_DATE, FILE_SIZE }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    @Autowired
+    public ImageMetadataListingService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                       @Value("${images.listing.fetch-size:100}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Streams {@code {"items": [...], "nextAfterId": id}}, plus {@code nextAfterDate} or {@code nextAfterSize} when
+     * the page is ordered by that column. The cursor fields are null on the last page.
+     */
+    public ResponseEntity<StreamingResponseBody> listImageMetadata(ImageMetadataFilter filter) {
+        if (filter.getLimit() < 1 || filter.getLimit() > MAX_LIMIT || filter.getAfterId() < 0 || !isValidSizeRange(filter)
+                || !isValidCursor(filter)) {
+            return ResponseEntity.badRequest().build();
+        }
+        SortKey sortKey = sortKey(filter);
+        PreparedStatementCreator query = buildQuery(filter);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("items");
+
+                ImageMetadataRowMapper rowMapper = new ImageMetadataRowMapper();
+                long[] lastId = {0};
+                Object[] lastSortValue = {null};
+                int[] rows = {0};
+                jdbcTemplate.query(query, rs -> {
+                    try {
+                        ImageMetadata metadata = rowMapper.mapRow(rs, rows[0]++);
+                        lastId[0] = metadata.getId();
+                        if (sortKey == SortKey.LAST_UPDATE_DATE) {
+                            // Read from the column, so the cursor keeps its full precision
+                            lastSortValue[0] = rs.getTimestamp("last_update_date").toLocalDateTime().toString();
+                        } else if (sortKey == SortKey.FILE_SIZE) {
+                            lastSortValue[0] = metadata.getFileSize();
+                        }
+                        objectMapper.writeValue(generator, metadata);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                generator.writeEndArray();
+                boolean more = rows[0] == filter.getLimit();
+                if (more) {
+                    generator.writeNumberField("nextAfterId", lastId[0]);
+                } else {
+                    generator.writeNullField("nextAfterId");
+                }
+                if (sortKey == SortKey.LAST_UPDATE_DATE) {
+                    generator.writeObjectField("nextAfterDate", more ? lastSortValue[0] : null);
+                } else if (sortKey == SortKey.FILE_SIZE) {
+                    generator.writeObjectField("nextAfterSize", more ? lastSortValue[0] : null);
+                }
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static boolean isValidSizeRange(ImageMetadataFilter filter) {
+        Long minSize = filter.getMinSize();
+        Long maxSize = filter.getMaxSize();
+        return (minSize == null || minSize >= 0) && (maxSize == null || maxSize >= 0)
+                && (minSize == null || maxSize == null || minSize <= maxSize);
+    }
+
+    // A cursor column must match the order of the page, and a page after the first needs its value
+    private static boolean isValidCursor(ImageMetadataFilter filter) {
+        SortKey sortKey = sortKey(filter);
+        if (filter.getAfterDate() != null && sortKey != SortKey.LAST_UPDATE_DATE
+                || filter.getAfterSize() != null && sortKey != SortKey.FILE_SIZE) {
+            return false;
+        }
+        return filter.getAfterId() == 0 || switch (sortKey) {
+            case ID -> true;
+            case LAST_UPDATE_DATE -> filter.getAfterDate() != null;
+            case FILE_SIZE -> filter.getAfterSize() != null;
+        };
+    }
+
+    static SortKey sortKey(ImageMetadataFilter filter) {
+        if (filter.getFrom() != null || filter.getTo() != null) {
+            return SortKey.LAST_UPDATE_DATE;
+        }
+        if (filter.getMinSize() != null || filter.getMaxSize() != null) {
+            return SortKey.FILE_SIZE;
+        }
+        return SortKey.ID;
+    }
+
+    PreparedStatementCreator buildQuery(ImageMetadataFilter filter) {
+        SortKey sortKey = sortKey(filter);
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        // Expanded instead of (column, id) > (?, ?), so the first comparison bounds the index range
+        switch (sortKey) {
+            case ID -> {
+                conditions.add("id > ?");
+                args.add(filter.getAfterId());
+            }
+            case LAST_UPDATE_DATE -> {
+                if (filter.getAfterDate() != null) {
+                    Timestamp afterDate = Timestamp.valueOf(filter.getAfterDate());
+                    conditions.add("last_update_date >= ? AND (last_update_date > ? OR id > ?)");
+                    args.addAll(List.of(afterDate, afterDate, filter.getAfterId()));
+                }
+            }
+            case FILE_SIZE -> {
+                if (filter.getAfterSize() != null) {
+                    conditions.add("file_size >= ? AND (file_size > ? OR id > ?)");
+                    args.addAll(List.of(filter.getAfterSize(), filter.getAfterSize(), filter.getAfterId()));
+                }
+            }
+        }
+        if (filter.getExtension() != null && !filter.getExtension().isBlank()) {
+            conditions.add("file_extension = ?");
+            args.add(filter.getExtension());
+        }
+        if (filter.getFrom() != null) {
+            conditions.add("last_update_date >= ?");
+            args.add(Timestamp.valueOf(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            conditions.add("last_update_date < ?");
+            args.add(Timestamp.valueOf(filter.getTo()));
+        }
+        if (filter.getMinSize() != null) {
+            conditions.add("file_size >= ?");
+            args.add(filter.getMinSize());
+        }
+        if (filter.getMaxSize() != null) {
+            conditions.add("file_size <= ?");
+            args.add(filter.getMaxSize());
+        }
+        // Date and size pages always have a range condition, so the list is never empty
+        StringBuilder sql = new StringBuilder("SELECT * FROM image_metadata WHERE ").append(String.join(" AND ", conditions));
+        sql.append(switch (sortKey) {
+            case ID -> " ORDER BY id LIMIT ?";
+            case LAST_UPDATE_DATE -> " ORDER BY last_update_date, id LIMIT ?";
+            case FILE_SIZE -> " ORDER BY file_size, id LIMIT ?";
+        });
+        args.add(filter.getLimit());
+
+        String statement = sql.toString();
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(statement);
+            // With useCursorFetch the driver streams rows in fetch-size chunks instead of buffering the page
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.epam.aws;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Makes sure image_metadata has its unique index on file_name before the application takes requests.
+ * Uploads replace the row of an existing name with {@code ON DUPLICATE KEY UPDATE}, which silently inserts
+ * another row when the index is missing. Tables written before the index can hold several rows per name, and
+ * ddl-auto only logs its failure to create the index over them. This migration keeps the newest row of every
+ * duplicated name, releases the content the other rows referenced, creates the index and refuses to start
+ * when the index still does not exist.
+ */
+@Slf4j
+@Component
+public class ImageMetadataMigration implements SmartInitializingSingleton {
+
+    static final String UNIQUE_INDEX = "uk_image_metadata_file_name";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int NAME_CHUNK_SIZE = 500;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final ImageContentStore contentStore;
+
+    @Autowired
+    public ImageMetadataMigration(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                                  TransactionOperations transactionOperations, ImageContentStore contentStore) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.contentStore = contentStore;
+    }
+
+    // Runs before the web server starts, so a failure stops the application instead of serving uploads
+    @Override
+    public void afterSingletonsInstantiated() {
+        // The factory is built in the background; waiting for it means ddl-auto has updated the schema
+        entityManagerFactory.getMetamodel();
+        migrate();
+    }
+
+    void migrate() {
+        // Instances of the previous version may keep inserting duplicates until the index exists
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !uniqueIndexExists(); attempt++) {
+            collapseDuplicateNames();
+            try {
+                jdbcTemplate.execute("CREATE UNIQUE INDEX " + UNIQUE_INDEX + " ON image_metadata (file_name)");
+                log.info("Created the unique index {}", UNIQUE_INDEX);
+            } catch (DataAccessException e) {
+                log.warn("Could not create the unique index {} (attempt {} of {})", UNIQUE_INDEX, attempt, MAX_ATTEMPTS, e);
+            }
+        }
+        if (!uniqueIndexExists()) {
+            throw new IllegalStateException("image_metadata has no unique index " + UNIQUE_INDEX
+                    + " on file_name; uploads would insert duplicate rows");
+        }
+    }
+
+    boolean uniqueIndexExists() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = 'image_metadata' AND index_name = ?"
+                        + " AND non_unique = 0", Integer.class, UNIQUE_INDEX);
+        return count != null && count > 0;
+    }
+
+    void collapseDuplicateNames() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT file_name FROM image_metadata GROUP BY file_name HAVING COUNT(*) > 1", String.class);
+        if (names.isEmpty()) {
+            return;
+        }
+        log.warn("Collapsing duplicate metadata rows of {} image names", names.size());
+        for (int from = 0; from < names.size(); from += NAME_CHUNK_SIZE) {
+            List<String> chunk = names.subList(from, Math.min(from + NAME_CHUNK_SIZE, names.size()));
+            List<String> released = transactionOperations.execute(status -> collapse(chunk));
+            contentStore.deleteUnreferenced(released);
+        }
+    }
+
+    /**
+     * Deletes all but the newest row of each name; the newest is the one the last upload wrote. Locking reads see
+     * the latest committed rows, so an instance migrating concurrently waits here and then finds nothing to delete.
+     *
+     * @return content objects that lost their last reference
+     */
+    private List<String> collapse(List<String> names) {
+        List<DuplicateRow> rows = jdbcTemplate.query("SELECT id, file_name, content_hash FROM image_metadata"
+                        + " WHERE file_name IN (" + String.join(", ", Collections.nCopies(names.size(), "?")) + ")"
+                        + " ORDER BY id FOR UPDATE",
+                (rs, rowNum) -> new DuplicateRow(rs.getLong("id"), rs.getString("file_name"), rs.getString("content_hash")),
+                names.toArray());
+
+        Map<String, DuplicateRow> newest = new HashMap<>();
+        rows.forEach(row -> newest.put(row.fileName(), row));
+        List<DuplicateRow> removed = rows.stream()
+                .filter(row -> newest.get(row.fileName()).id() != row.id())
+                .toList();
+        if (removed.isEmpty()) {
+            return List.of();
+        }
+
+        jdbcTemplate.batchUpdate("DELETE FROM image_metadata WHERE id = ?",
+                removed.stream().map(row -> new Object[]{row.id()}).toList());
+        // Rows stored before deduplication share the object under the image name with the row that is kept,
+        // or leave it unreferenced if the kept row has content; it is left in place rather than risk live data
+        long legacyObjects = removed.stream()
+                .filter(row -> row.contentHash() == null && newest.get(row.fileName()).contentHash() != null)
+                .map(DuplicateRow::fileName)
+                .distinct()
+                .count();
+        if (legacyObjects > 0) {
+            log.warn("{} objects stored under their image name are no longer referenced and were kept", legacyObjects);
+        }
+        List<String> released = contentStore.release(new ArrayList<>(removed.stream()
+                .map(DuplicateRow::contentHash)
+                .filter(Objects::nonNull)
+                .toList()));
+        log.info("Deleted {} duplicate metadata rows, {} content objects released", removed.size(), released.size());
+        return released;
+    }
+
+    private record DuplicateRow(long id, String fileName, String contentHash) {
+    }
+}
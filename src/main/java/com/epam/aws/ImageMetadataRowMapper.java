@@ -15,6 +15,12 @@ public class ImageMetadataRowMapper implements RowMapper<ImageMetadata> {
         metadata.setFileSize(rs.getLong("file_size"));
         metadata.setFileExtension(rs.getString("file_extension"));
         metadata.setLastUpdateDate(new Date(rs.getTimestamp("last_update_date").getTime()));
+        metadata.setETag(rs.getString("e_tag"));
+        metadata.setContentHash(rs.getString("content_hash"));
+        metadata.setObjectKey(rs.getString("object_key"));
+        metadata.setImageFormat(rs.getString("image_format"));
+        metadata.setWidth(rs.getObject("width", Integer.class));
+        metadata.setHeight(rs.getObject("height", Integer.class));
         return metadata;
     }
 }
\ No newline at end of file
@@ -0,0 +1,329 @@
+package com.epam.aws;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves resized variants of stored objects, e.g. for {@code /images/download/cat.jpg?w=256}.
+ * A rendition is generated once on the bounded rendition pool, stored in S3 under
+ * {@code _renditions/{width}/{objectKey}} and streamed from there afterwards. Only the configured widths
+ * are accepted, so clients cannot make the service render and store arbitrary sizes.
+ */
+@Slf4j
+@Service
+public class ImageRenditionService {
+
+    static final String RENDITION_PREFIX = "_renditions/";
+
+    // DeleteObjects accepts at most 1000 keys per request
+    private static final int MAX_DELETE_OBJECTS_KEYS = 1000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final Executor renditionExecutor;
+    private final Set<Integer> widths;
+    private final List<Integer> pregeneratedWidths;
+    private final long maxSourcePixels;
+
+    // Renditions being generated, so concurrent requests for the same variant share one job
+    private final Map<String, CompletableFuture<Rendition>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ImageRenditionService(S3Client s3Client,
+                                 @Qualifier("renditionExecutor") Executor renditionExecutor,
+                                 @Value("${images.renditions.widths:128,256,512,1024}") List<Integer> widths,
+                                 @Value("${images.renditions.pregenerated-widths:256}") List<Integer> pregeneratedWidths,
+                                 @Value("${images.renditions.max-source-pixels:50000000}") long maxSourcePixels) {
+        this.s3Client = s3Client;
+        this.bucketName = System.getenv("S3_BUCKET_NAME");
+        this.renditionExecutor = renditionExecutor;
+        this.widths = Set.copyOf(widths);
+        this.pregeneratedWidths = pregeneratedWidths.stream().filter(this.widths::contains).toList();
+        this.maxSourcePixels = maxSourcePixels;
+    }
+
+    public ResponseEntity<StreamingResponseBody> downloadRendition(String objectKey, int width, HttpHeaders requestHeaders) {
+        if (!widths.contains(width)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String key = renditionKey(objectKey, width);
+
+        ResponseInputStream<GetObjectResponse> stored;
+        try {
+            stored = s3Client.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).build());
+        } catch (NoSuchKeyException e) {
+            stored = null;
+        } catch (Exception e) {
+            log.error("Could not read rendition {}", key, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        if (stored != null) {
+            GetObjectResponse objectResponse = stored.response();
+            if (ImageService.isNotModified(requestHeaders, objectResponse.eTag(), null)) {
+                closeQuietly(stored);
+                return withRenditionHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), objectResponse.eTag(),
+                        objectResponse.contentType()).build();
+            }
+            ResponseInputStream<GetObjectResponse> body = stored;
+            ResponseEntity.BodyBuilder response = withRenditionHeaders(ResponseEntity.ok(), objectResponse.eTag(),
+                    objectResponse.contentType());
+            if (objectResponse.contentLength() != null) {
+                response.contentLength(objectResponse.contentLength());
+            }
+            return response.body(outputStream -> {
+                try (body) {
+                    body.transferTo(outputStream);
+                }
+            });
+        }
+
+        Rendition rendition;
+        try {
+            rendition = generate(objectKey, width).join();
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchKeyException) {
+                return ResponseEntity.notFound().build();
+            }
+            if (e.getCause() instanceof UnsupportedImageException) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+            }
+            log.error("Could not generate rendition {}", key, e.getCause());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        return withRenditionHeaders(ResponseEntity.ok(), rendition.eTag(), rendition.contentType())
+                .contentLength(rendition.bytes().length)
+                .body(outputStream -> outputStream.write(rendition.bytes()));
+    }
+
+    /**
+     * Generates the pre-generated widths of a newly stored object in the background.
+     */
+    public void pregenerate(String objectKey) {
+        for (int width : pregeneratedWidths) {
+            try {
+                generate(objectKey, width).whenComplete((rendition, e) -> {
+                    if (e != null) {
+                        log.warn("Could not pre-generate the {}px rendition of {}", width, objectKey, e);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // It will be generated on first request instead
+                log.debug("Rendition pool is busy, skipping pre-generation of {}", objectKey);
+            }
+        }
+    }
+
+    /**
+     * Deletes every rendition of the objects. Failures are logged; leftovers of content-addressed objects
+     * are still valid if the same content is uploaded again.
+     */
+    public void deleteRenditions(Collection<String> objectKeys) {
+        List<ObjectIdentifier> keys = new ArrayList<>();
+        for (String objectKey : objectKeys) {
+            widths.forEach(width -> keys.add(ObjectIdentifier.builder().key(renditionKey(objectKey, width)).build()));
+        }
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_OBJECTS_KEYS) {
+            List<ObjectIdentifier> chunk = keys.subList(from, Math.min(from + MAX_DELETE_OBJECTS_KEYS, keys.size()));
+            try {
+                s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder().objects(chunk).quiet(true).build())
+                        .build());
+            } catch (Exception e) {
+                log.warn("Could not delete {} renditions", chunk.size(), e);
+            }
+        }
+    }
+
+    static String renditionKey(String objectKey, int width) {
+        return RENDITION_PREFIX + width + "/" + objectKey;
+    }
+
+    static boolean isRenditionKey(String key) {
+        return key.startsWith(RENDITION_PREFIX);
+    }
+
+    private CompletableFuture<Rendition> generate(String objectKey, int width) {
+        String key = renditionKey(objectKey, width);
+        CompletableFuture<Rendition> job = new CompletableFuture<>();
+        CompletableFuture<Rendition> running = inFlight.putIfAbsent(key, job);
+        if (running != null) {
+            return running;
+        }
+        try {
+            renditionExecutor.execute(() -> {
+                try {
+                    job.complete(render(objectKey, width, key));
+                } catch (Throwable e) {
+                    job.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, job);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.remove(key, job);
+            throw e;
+        }
+        return job;
+    }
+
+    private Rendition render(String objectKey, int width, String key) throws IOException {
+        DecodedImage source;
+        try (ResponseInputStream<GetObjectResponse> original = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(objectKey)
+                .build())) {
+            source = decode(original);
+        }
+
+        String format = outputFormat(source.formatName());
+        BufferedImage resized = resize(source.image(), width, "jpeg".equals(format));
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (!ImageIO.write(resized, format, encoded)) {
+            throw new UnsupportedImageException("No " + format + " encoder available");
+        }
+        byte[] bytes = encoded.toByteArray();
+
+        String contentType = "image/" + format;
+        String eTag = s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build(),
+                RequestBody.fromBytes(bytes)).eTag();
+        return new Rendition(bytes, contentType, eTag);
+    }
+
+    // Reads the dimensions from the header first, so oversized images are rejected before their pixels are decoded
+    private DecodedImage decode(InputStream input) throws IOException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = imageInput == null ? null : ImageIO.getImageReaders(imageInput);
+            if (readers == null || !readers.hasNext()) {
+                throw new UnsupportedImageException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxSourcePixels) {
+                    throw new UnsupportedImageException("Image is too large to resize");
+                }
+                return new DecodedImage(reader.read(0), reader.getFormatName());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image down to the width, keeping the aspect ratio. Large reductions are done in halving steps,
+     * which keeps bilinear filtering from dropping detail. Images narrower than the width are not enlarged.
+     */
+    static BufferedImage resize(BufferedImage source, int width, boolean opaque) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            int stepWidth = Math.max(targetWidth, currentWidth / 2);
+            int stepHeight = Math.max(targetHeight, currentHeight / 2);
+            BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+            currentWidth = stepWidth;
+            currentHeight = stepHeight;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    // JPEG stays JPEG; everything else becomes PNG, which keeps transparency and needs no extra encoder.
+    // The format is taken from the decoder because content-addressed keys have no extension
+    static String outputFormat(String sourceFormatName) {
+        return sourceFormatName.equalsIgnoreCase("jpeg") || sourceFormatName.equalsIgnoreCase("jpg") ? "jpeg" : "png";
+    }
+
+    private static ResponseEntity.BodyBuilder withRenditionHeaders(ResponseEntity.BodyBuilder response, String eTag,
+                                                                   String contentType) {
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        // The URL names the image, not its content, so a re-upload changes what it serves; caches revalidate by ETag
+        return response.cacheControl(CacheControl.noCache())
+                .contentType(contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Could not close the S3 stream", e);
+        }
+    }
+
+    private record Rendition(byte[] bytes, String contentType, String eTag) {
+    }
+
+    private record DecodedImage(BufferedImage image, String formatName) {
+    }
+
+    static class UnsupportedImageException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedImageException(String message) {
+            super(message);
+        }
+    }
+}
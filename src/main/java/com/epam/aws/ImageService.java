@@ -3,23 +3,62 @@ package com.epam.aws;
 
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import com.epam.aws.model.BulkDeleteRequest;
+import com.epam.aws.model.BulkDeleteResult;
 import com.epam.aws.model.ImageMetadata;
+import com.epam.aws.model.UploadResult;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
@@ -30,14 +69,64 @@ public class ImageService {
 
     private final JdbcTemplate jdbcTemplate;
 
-    private final SqsProcessor sqsProcessor;
+    private final NotificationOutbox notificationOutbox;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ImageContentStore contentStore;
+
+    private final ImageCache imageCache;
+
+    private final Executor uploadExecutor;
+
+    private final ImageMetadataCache metadataCache;
+
+    private final RandomImageSelector randomImageSelector;
+
+    private final ImageRenditionService renditionService;
+
+    private final StageMetrics stageMetrics;
+
+    @Value("${images.metadata-cache.warm-up-size:0}")
+    private int metadataCacheWarmUpSize;
+
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
+    // DeleteObjects accepts at most 1000 keys per request
+    private static final int MAX_DELETE_OBJECTS_KEYS = 1000;
+
+    private static final int METADATA_DELETE_CHUNK_SIZE = 500;
+
+    private static final String INSERT_METADATA_SQL =
+            "INSERT INTO image_metadata (file_name, file_size, file_extension, last_update_date, e_tag, content_hash, object_key,"
+                    + " image_format, width, height) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                    // file_name is unique, so uploading a name again replaces its row
+                    + " ON DUPLICATE KEY UPDATE file_size = VALUES(file_size), file_extension = VALUES(file_extension),"
+                    + " last_update_date = VALUES(last_update_date), e_tag = VALUES(e_tag), content_hash = VALUES(content_hash),"
+                    + " object_key = VALUES(object_key), image_format = VALUES(image_format), width = VALUES(width),"
+                    + " height = VALUES(height)";
+
+    private static final String UNSUPPORTED_IMAGE = "File is not a supported image";
 
     @Autowired
-    public ImageService(S3Client s3Client, JdbcTemplate jdbcTemplate, SqsProcessor sqsProcessor) {
+    public ImageService(S3Client s3Client, JdbcTemplate jdbcTemplate, NotificationOutbox notificationOutbox,
+                        TransactionOperations transactionOperations,
+                        ImageContentStore contentStore, ImageCache imageCache,
+                        @Qualifier("imageUploadExecutor") Executor uploadExecutor,
+                        ImageMetadataCache metadataCache, RandomImageSelector randomImageSelector,
+                        ImageRenditionService renditionService, StageMetrics stageMetrics) {
         this.s3Client = s3Client;
         this.jdbcTemplate = jdbcTemplate;
         this.bucketName = System.getenv("S3_BUCKET_NAME");
-        this.sqsProcessor = sqsProcessor;
+        this.notificationOutbox = notificationOutbox;
+        this.transactionOperations = transactionOperations;
+        this.contentStore = contentStore;
+        this.imageCache = imageCache;
+        this.uploadExecutor = uploadExecutor;
+        this.metadataCache = metadataCache;
+        this.randomImageSelector = randomImageSelector;
+        this.renditionService = renditionService;
+        this.stageMetrics = stageMetrics;
     }
 
     @PostConstruct
@@ -51,73 +140,283 @@ public class ImageService {
 
     public ResponseEntity<String> uploadImage(MultipartFile file) {
         try {
-            if (file == null || file.isEmpty()) {
-                return ResponseEntity.badRequest().body("File is empty");
+            String validationError = validateUpload(file);
+            if (validationError != null) {
+                return ResponseEntity.badRequest().body(validationError);
+            }
+            // Checked before anything is sent to S3
+            Optional<ImageHeaderInspector.ImageHeader> header = inspectHeader(file);
+            if (header.isEmpty()) {
+                return ResponseEntity.badRequest().body(UNSUPPORTED_IMAGE);
+            }
+            String lastUpdateDate = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
+
+            StoredImage image = storeImage(file, header.get());
+
+            String message = notificationMessage(image.fileName(), image.fileSize(), image.fileExtension(),
+                    downloadUrl(image.fileName()));
+
+            // Save metadata to RDS; the notification is relayed to SQS once this commits
+            List<String> replacedObjects;
+            try {
+                replacedObjects = transactionOperations.execute(status -> {
+                    List<String> replaced = saveMetadata(List.of(image), lastUpdateDate);
+                    notificationOutbox.add(message);
+                    return replaced;
+                });
+            } catch (RuntimeException e) {
+                releaseContent(List.of(image));
+                throw e;
             }
+            metadataCache.invalidate(image.fileName());
+            deleteReplacedObjects(replacedObjects);
+            pregenerateRenditions(image);
 
-            // Extract metadata
-            String fileName = file.getOriginalFilename();
-            if (fileName == null || !fileName.contains(".")) {
-                return ResponseEntity.badRequest().body("File extension is not supported");
+            return ResponseEntity.ok("File uploaded successfully: " + image.fileName());
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Could not upload the file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads many files at once. S3 puts run concurrently, then the metadata rows and their outbox
+     * notifications are written with batch inserts in one transaction. Every file gets its own result, so a bad file
+     * does not fail the rest of the batch.
+     */
+    public ResponseEntity<List<UploadResult>> uploadImages(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        int count = files.size();
+        UploadResult[] results = new UploadResult[count];
+        List<CompletableFuture<StoredImage>> uploads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MultipartFile file = files.get(i);
+            String validationError = validateUpload(file);
+            Optional<ImageHeaderInspector.ImageHeader> header = Optional.empty();
+            if (validationError == null) {
+                try {
+                    header = inspectHeader(file);
+                    if (header.isEmpty()) {
+                        validationError = UNSUPPORTED_IMAGE;
+                    }
+                } catch (IOException e) {
+                    validationError = "Could not read the file: " + e.getMessage();
+                }
+            }
+            if (validationError != null) {
+                results[i] = UploadResult.failed(file == null ? null : file.getOriginalFilename(), validationError);
+                uploads.add(null);
+                continue;
             }
-            String fileExtension = fileName.substring(fileName.lastIndexOf(".") + 1);
-            long fileSize = file.getSize();
+            ImageHeaderInspector.ImageHeader imageHeader = header.get();
+            uploads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return storeImage(file, imageHeader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, uploadExecutor));
+        }
+
+        StoredImage[] stored = new StoredImage[count];
+        for (int i = 0; i < count; i++) {
+            if (uploads.get(i) == null) {
+                continue;
+            }
+            try {
+                stored[i] = uploads.get(i).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                results[i] = UploadResult.failed(files.get(i).getOriginalFilename(), "Could not upload the file: " + cause.getMessage());
+            }
+        }
+
+        List<Integer> storedIndexes = IntStream.range(0, count).filter(i -> stored[i] != null).boxed().toList();
+        if (!storedIndexes.isEmpty()) {
             String lastUpdateDate = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
+            List<String> messages = storedIndexes.stream()
+                    .map(i -> notificationMessage(stored[i].fileName(), stored[i].fileSize(), stored[i].fileExtension(),
+                            downloadUrl(stored[i].fileName())))
+                    .toList();
+            try {
+                List<String> replacedObjects = transactionOperations.execute(status -> {
+                    List<String> replaced = saveMetadata(storedIndexes.stream().map(i -> stored[i]).toList(), lastUpdateDate);
+                    notificationOutbox.addAll(messages);
+                    return replaced;
+                });
+                storedIndexes.forEach(i -> metadataCache.invalidate(stored[i].fileName()));
+                deleteReplacedObjects(replacedObjects);
+                storedIndexes.forEach(i -> pregenerateRenditions(stored[i]));
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Could not save metadata of {} uploaded files", storedIndexes.size(), e);
+                releaseContent(storedIndexes.stream().map(i -> stored[i]).toList());
+                storedIndexes.forEach(i -> results[i] = UploadResult.failed(stored[i].fileName(),
+                        "Could not save the file metadata: " + e.getMessage()));
+                return ResponseEntity.ok(List.of(results));
+            }
+            storedIndexes.forEach(i -> results[i] = UploadResult.uploaded(stored[i].fileName(), "File uploaded successfully"));
+        }
+        return ResponseEntity.ok(List.of(results));
+    }
 
-            // Save file to S3
-            s3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(bucketName)
-                            .key(fileName)
-                            .build(),
-                    RequestBody.fromBytes(file.getBytes()));
+    private static String validateUpload(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            return "File is empty";
+        }
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || !fileName.contains(".")) {
+            return "File extension is not supported";
+        }
+        return null;
+    }
 
-            // Save metadata to RDS
-            String sql = "INSERT INTO image_metadata (file_name, file_size, file_extension, last_update_date) VALUES (?, ?, ?, ?)";
+    // Only the first bytes are read, the image itself is never decoded
+    private static Optional<ImageHeaderInspector.ImageHeader> inspectHeader(MultipartFile file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return ImageHeaderInspector.inspect(inputStream);
+        }
+    }
 
+    private StoredImage storeImage(MultipartFile file, ImageHeaderInspector.ImageHeader header) throws IOException {
+        // Extract metadata
+        String fileName = file.getOriginalFilename();
+        String fileExtension = fileName.substring(fileName.lastIndexOf(".") + 1);
+        long fileSize = file.getSize();
+        stageMetrics.recordUploadSize(fileSize);
 
-            jdbcTemplate.update(sql, fileName, fileSize, fileExtension, lastUpdateDate);
+        // Identical content is stored once; the file is streamed to S3 only when it is new
+        ImageContentStore.StoredContent content = contentStore.store(file);
+        imageCache.invalidate(fileName);
+        return new StoredImage(fileName, fileSize, fileExtension, header, content);
+    }
 
-            String downloadUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
-                    .path("/images/download/")
-                    .path(fileName)
-                    .toUriString();
+    /**
+     * Writes the metadata rows of stored uploads. A name that already has a row keeps it with the new values,
+     * and the content the old row referenced is released. Must run inside the upload transaction: the old rows
+     * stay locked until it commits, so concurrent uploads of one name cannot release the same reference twice.
+     *
+     * @return objects no image uses any more, to be deleted once the transaction has committed
+     */
+    private List<String> saveMetadata(List<StoredImage> images, String lastUpdateDate) {
+        Map<String, List<String>> previous = contentHashesByName(images.stream().map(StoredImage::fileName).distinct().toList(), true);
+        List<Object[]> rows = images.stream().map(image -> image.insertArgs(lastUpdateDate)).toList();
+        stageMetrics.record(StageMetrics.JDBC_INSERT, () -> jdbcTemplate.batchUpdate(INSERT_METADATA_SQL, rows));
 
-            // Send message to SQS
-            String message = String.format(
-                    """
-                            Image uploaded successfully!
-                            
-                            Details:
-                            - Name: %s
-                            - Size: %d bytes
-                            - Extension: %s
-                            
-                            You can download the image using the following link:
-                            %s""",
-                    fileName, fileSize, fileExtension, downloadUrl
-            );
+        List<String> unused = new ArrayList<>();
+        List<String> releasedHashes = new ArrayList<>();
+        previous.forEach((name, contentHashes) -> {
+            // Images uploaded before deduplication are stored under their own name
+            if (contentHashes.stream().anyMatch(Objects::isNull)) {
+                unused.add(name);
+            }
+            contentHashes.stream().filter(Objects::nonNull).forEach(releasedHashes::add);
+        });
+        // A name repeated within one batch keeps the last file
+        Set<String> names = new HashSet<>();
+        for (int i = images.size() - 1; i >= 0; i--) {
+            if (!names.add(images.get(i).fileName())) {
+                releasedHashes.add(images.get(i).content().contentHash());
+            }
+        }
+        unused.addAll(contentStore.release(releasedHashes));
+        return unused;
+    }
 
-            sqsProcessor.sendMessage(message);
+    // Runs after the upload transaction has committed, so a rollback never leaves metadata without its object
+    private void deleteReplacedObjects(List<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return;
+        }
+        contentStore.deleteUnreferenced(objectKeys.stream().filter(ImageContentStore::isContentKey).toList());
+        List<String> ownObjects = objectKeys.stream().filter(key -> !ImageContentStore.isContentKey(key)).toList();
+        try {
+            ownObjects.forEach(key -> stageMetrics.record(StageMetrics.S3_DELETE, () -> s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build())));
+            renditionService.deleteRenditions(ownObjects);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete {} replaced objects", ownObjects.size(), e);
+        }
+    }
 
-            return ResponseEntity.ok("File uploaded successfully: " + fileName);
+    // Renditions follow the stored object, so content that was already stored has them already
+    private void pregenerateRenditions(StoredImage image) {
+        if (image.content().created()) {
+            renditionService.pregenerate(image.content().objectKey());
+        }
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Could not upload the file: " + e.getMessage());
+    // Gives back the references taken by uploads whose metadata could not be saved
+    private void releaseContent(List<StoredImage> images) {
+        try {
+            List<String> released = transactionOperations.execute(status ->
+                    contentStore.release(images.stream().map(image -> image.content().contentHash()).toList()));
+            contentStore.deleteUnreferenced(released);
+        } catch (RuntimeException e) {
+            log.error("Could not release the content of {} failed uploads", images.size(), e);
+        }
+    }
+
+    private static String downloadUrl(String fileName) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/images/download/")
+                .path(fileName)
+                .toUriString();
+    }
+
+    static String notificationMessage(String fileName, long fileSize, String fileExtension, String downloadUrl) {
+        return String.format(
+                """
+                        Image uploaded successfully!
+                        
+                        Details:
+                        - Name: %s
+                        - Size: %d bytes
+                        - Extension: %s
+                        
+                        You can download the image using the following link:
+                        %s""",
+                fileName, fileSize, fileExtension, downloadUrl
+        );
+    }
+
+    private record StoredImage(String fileName, long fileSize, String fileExtension, ImageHeaderInspector.ImageHeader header,
+                               ImageContentStore.StoredContent content) {
+        Object[] insertArgs(String lastUpdateDate) {
+            return new Object[]{fileName, fileSize, fileExtension, lastUpdateDate, content.eTag(), content.contentHash(),
+                    content.objectKey(), header.format(), header.width(), header.height()};
         }
     }
 
     public ResponseEntity<String> deleteImage(String imageName) {
         try {
-            s3Client.deleteObject(DeleteObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(imageName)
-                    .build());
+            List<String> contentHashes = stageMetrics.record(StageMetrics.JDBC_SELECT, () -> jdbcTemplate.queryForList(
+                    "SELECT content_hash FROM image_metadata WHERE file_name = ?", String.class, imageName));
+            // Images uploaded before deduplication are stored under their own name
+            boolean ownObject = contentHashes.isEmpty() || contentHashes.stream().anyMatch(Objects::isNull);
+            if (ownObject) {
+                stageMetrics.record(StageMetrics.S3_DELETE, () -> s3Client.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(imageName)
+                        .build()));
+            }
+            imageCache.invalidate(imageName);
 
-            // Delete metadata from RDS
-            String sql = "DELETE FROM image_metadata WHERE file_name = ?";
-            jdbcTemplate.update(sql, imageName);
+            // Delete metadata from RDS, together with the references it held
+            List<String> released = transactionOperations.execute(status -> {
+                stageMetrics.record(StageMetrics.JDBC_DELETE, () ->
+                        jdbcTemplate.update("DELETE FROM image_metadata WHERE file_name = ?", imageName));
+                return contentStore.release(contentHashes.stream().filter(Objects::nonNull).toList());
+            });
+            metadataCache.invalidate(imageName);
+            contentStore.deleteUnreferenced(released);
+            if (ownObject) {
+                renditionService.deleteRenditions(List.of(imageName));
+            }
 
             return ResponseEntity.ok("File deleted successfully");
 
@@ -127,42 +426,419 @@ public class ImageService {
         }
     }
 
-    public ResponseEntity<ImageMetadata> getImageMetadata(String imageName) {
+    /**
+     * Deletes the images named in the request, or every image whose name starts with the prefix.
+     * Objects stored under the image names are removed with DeleteObjects in groups of up to 1000, metadata rows
+     * with chunked IN deletes and deduplicated content once its last reference is gone.
+     * Keys that could not be deleted are reported individually.
+     */
+    public ResponseEntity<BulkDeleteResult> deleteImages(BulkDeleteRequest request) {
+        boolean byName = request != null && request.getNames() != null && !request.getNames().isEmpty();
+        boolean byPrefix = request != null && request.getPrefix() != null && !request.getPrefix().isEmpty();
+        if (byName == byPrefix) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BulkDeleteResult result = new BulkDeleteResult();
+        if (byName) {
+            List<String> names = request.getNames().stream().distinct().toList();
+            for (int from = 0; from < names.size(); from += MAX_DELETE_OBJECTS_KEYS) {
+                deleteChunk(names.subList(from, Math.min(from + MAX_DELETE_OBJECTS_KEYS, names.size())), result);
+            }
+        } else {
+            try {
+                deleteByPrefix(request.getPrefix(), result);
+            } catch (Exception e) {
+                log.error("Could not list images with prefix {}", request.getPrefix(), e);
+                result.getFailures().add(new BulkDeleteResult.Failure(request.getPrefix(), "ListFailed", e.getMessage()));
+            }
+        }
+        log.info("Bulk delete removed {} of {} images", result.getDeleted(), result.getRequested());
+        return ResponseEntity.ok(result);
+    }
+
+    private void deleteByPrefix(String prefix, BulkDeleteResult result) {
+        // Listing pages hold at most 1000 keys, so every page maps to one DeleteObjects call
+        s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .build())
+                .forEach(page -> {
+                    // Renditions and shared content are removed together with the images using them
+                    List<String> keys = page.contents().stream()
+                            .map(S3Object::key)
+                            .filter(key -> !ImageRenditionService.isRenditionKey(key) && !ImageContentStore.isContentKey(key))
+                            .toList();
+                    if (!keys.isEmpty()) {
+                        deleteChunk(keys, result);
+                    }
+                });
+
+        // Deduplicated images are stored under content keys, so only the database knows their names
+        String likePrefix = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        String after = "";
+        List<String> names;
+        do {
+            names = jdbcTemplate.queryForList("SELECT DISTINCT file_name FROM image_metadata"
+                            + " WHERE content_hash IS NOT NULL AND file_name LIKE ? AND file_name > ? ORDER BY file_name LIMIT ?",
+                    String.class, likePrefix, after, MAX_DELETE_OBJECTS_KEYS);
+            if (!names.isEmpty()) {
+                deleteChunk(names, result);
+                after = names.get(names.size() - 1);
+            }
+        } while (names.size() == MAX_DELETE_OBJECTS_KEYS);
+    }
+
+    private void deleteChunk(List<String> keys, BulkDeleteResult result) {
+        result.setRequested(result.getRequested() + keys.size());
+
+        Map<String, List<String>> contentHashesByName = contentHashesByName(keys, false);
+        // Names without metadata are still removed from S3, as they were before deduplication
+        List<String> ownObjects = keys.stream()
+                .filter(key -> !contentHashesByName.containsKey(key) || contentHashesByName.get(key).stream().anyMatch(Objects::isNull))
+                .toList();
+
+        Set<String> failedKeys = new HashSet<>();
+        if (!ownObjects.isEmpty()) {
+            try {
+                DeleteObjectsResponse response = stageMetrics.record(StageMetrics.S3_DELETE, () -> s3Client.deleteObjects(
+                        DeleteObjectsRequest.builder()
+                                .bucket(bucketName)
+                                .delete(Delete.builder()
+                                        .objects(ownObjects.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                                        .quiet(true)
+                                        .build())
+                                .build()));
+                for (S3Error error : response.errors()) {
+                    failedKeys.add(error.key());
+                    result.getFailures().add(new BulkDeleteResult.Failure(error.key(), error.code(), error.message()));
+                }
+            } catch (Exception e) {
+                log.error("Could not delete a group of {} images from S3", ownObjects.size(), e);
+                ownObjects.forEach(key -> result.getFailures().add(new BulkDeleteResult.Failure(key, "DeleteObjectsFailed", e.getMessage())));
+                failedKeys.addAll(ownObjects);
+            }
+        }
+
+        List<String> deletedKeys = keys.stream().filter(key -> !failedKeys.contains(key)).toList();
+        deletedKeys.forEach(imageCache::invalidate);
+
+        // Delete metadata from RDS
+        for (int from = 0; from < deletedKeys.size(); from += METADATA_DELETE_CHUNK_SIZE) {
+            List<String> chunk = deletedKeys.subList(from, Math.min(from + METADATA_DELETE_CHUNK_SIZE, deletedKeys.size()));
+            String sql = "DELETE FROM image_metadata WHERE file_name IN (" + placeholders(chunk.size()) + ")";
+            List<String> contentHashes = chunk.stream()
+                    .flatMap(key -> contentHashesByName.getOrDefault(key, List.of()).stream())
+                    .filter(Objects::nonNull)
+                    .toList();
+            try {
+                List<String> released = transactionOperations.execute(status -> {
+                    stageMetrics.record(StageMetrics.JDBC_DELETE, () -> jdbcTemplate.update(sql, chunk.toArray()));
+                    return contentStore.release(contentHashes);
+                });
+                chunk.forEach(metadataCache::invalidate);
+                result.setDeleted(result.getDeleted() + chunk.size());
+                // Content objects are deleted only after the commit; failures are left to the content reaper
+                contentStore.deleteUnreferenced(released);
+                renditionService.deleteRenditions(chunk.stream().filter(ownObjects::contains).toList());
+            } catch (RuntimeException e) {
+                log.error("Could not delete metadata of {} images", chunk.size(), e);
+                chunk.forEach(key -> result.getFailures().add(new BulkDeleteResult.Failure(key, "MetadataDeleteFailed", e.getMessage())));
+            }
+        }
+    }
+
+    // Content hash of every metadata row of the names; null for rows stored under their own name
+    private Map<String, List<String>> contentHashesByName(List<String> names, boolean forUpdate) {
+        Map<String, List<String>> contentHashes = new HashMap<>();
+        for (int from = 0; from < names.size(); from += METADATA_DELETE_CHUNK_SIZE) {
+            List<String> chunk = names.subList(from, Math.min(from + METADATA_DELETE_CHUNK_SIZE, names.size()));
+            String sql = "SELECT file_name, content_hash FROM image_metadata WHERE file_name IN (" + placeholders(chunk.size()) + ")"
+                    + (forUpdate ? " FOR UPDATE" : "");
+            stageMetrics.record(StageMetrics.JDBC_SELECT, () -> {
+                jdbcTemplate.query(sql, rs -> {
+                    contentHashes.computeIfAbsent(rs.getString("file_name"), name -> new ArrayList<>())
+                            .add(rs.getString("content_hash"));
+                }, chunk.toArray());
+                return null;
+            });
+        }
+        return contentHashes;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    public ResponseEntity<ImageMetadata> getImageMetadata(String imageName, HttpHeaders requestHeaders) {
+        Optional<ImageMetadata> found = findMetadata(imageName);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ImageMetadata metadata = found.get();
+        String eTag = metadataETag(metadata);
+        if (isNotModified(requestHeaders, eTag, metadata.getLastUpdateDate())) {
+            return notModified(eTag, metadata.getLastUpdateDate());
+        }
+        return withValidators(ResponseEntity.ok(), eTag, metadata.getLastUpdateDate()).body(metadata);
+    }
+
+    private Optional<ImageMetadata> findMetadata(String imageName) {
+        return metadataCache.get(imageName, this::loadMetadata);
+    }
+
+    private Optional<ImageMetadata> loadMetadata(String imageName) {
         String sql = "SELECT * FROM image_metadata WHERE file_name = ?";
         try {
-            ImageMetadata metadata = jdbcTemplate.queryForObject(sql, new ImageMetadataRowMapper(), imageName);
-            return ResponseEntity.ok(metadata);
+            return Optional.ofNullable(stageMetrics.record(StageMetrics.JDBC_SELECT, () ->
+                    jdbcTemplate.queryForObject(sql, new ImageMetadataRowMapper(), imageName)));
         } catch (EmptyResultDataAccessException ex) {
-            return ResponseEntity.notFound().build();
+            return Optional.empty();
         }
     }
 
-    public ResponseEntity<ImageMetadata> getRandomImageMetadata() {
-        String sql = "SELECT * FROM image_metadata ORDER BY RAND() LIMIT 1";
+    /**
+     * Preloads the most recently uploaded rows into the metadata cache when warm-up is configured.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpMetadataCache() {
+        if (metadataCacheWarmUpSize <= 0) {
+            return;
+        }
         try {
-            ImageMetadata metadata = jdbcTemplate.queryForObject(sql, new ImageMetadataRowMapper());
-            return ResponseEntity.ok(metadata);
-        } catch (EmptyResultDataAccessException ex) {
-            return ResponseEntity.notFound().build();
+            List<ImageMetadata> recent = jdbcTemplate.query("SELECT * FROM image_metadata ORDER BY id DESC LIMIT ?",
+                    new ImageMetadataRowMapper(), metadataCacheWarmUpSize);
+            recent.forEach(metadataCache::put);
+            log.info("Metadata cache warmed up with {} rows", recent.size());
+        } catch (DataAccessException e) {
+            log.warn("Could not warm up the metadata cache", e);
+        }
+    }
+
+    public ResponseEntity<ImageMetadata> getRandomImageMetadata() {
+        return randomImageSelector.pickOne()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    public ResponseEntity<List<ImageMetadata>> getRandomImagesMetadata(int count) {
+        if (count < 1) {
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(randomImageSelector.pick(count));
     }
 
-    public ResponseEntity<Resource> downloadImage(String imageName) {
-        try (var s3ObjectInputStream = s3Client.getObject(GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(imageName)
-                .build())) {
+    public ResponseEntity<StreamingResponseBody> downloadImage(String imageName, HttpHeaders requestHeaders) {
+        // Revalidation is answered from the metadata row alone, without touching S3
+        Date lastModified = null;
+        Optional<ImageMetadata> metadata = findMetadata(imageName);
+        if (metadata.isPresent()) {
+            lastModified = metadata.get().getLastUpdateDate();
+            if (isNotModified(requestHeaders, metadata.get().getETag(), lastModified)) {
+                return notModified(metadata.get().getETag(), lastModified);
+            }
+        }
 
-            byte[] imageBytes = s3ObjectInputStream.readAllBytes();
-            Resource resource = new ByteArrayResource(imageBytes);
+        String objectKey = objectKey(imageName, metadata);
+        String range = singleByteRange(requestHeaders);
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + imageName + "\"")
-                    .body(resource);
+        ImageCache.CachedImage cached = imageCache.get(imageName);
+        if (cached != null && isStillValid(imageName, objectKey, cached)) {
+            return serveFromCache(imageName, cached, requestHeaders, range, lastModified);
+        }
 
+        ResponseInputStream<GetObjectResponse> s3Object;
+        try {
+            // Time to the response headers; the body is streamed to the client afterwards
+            s3Object = stageMetrics.record(StageMetrics.S3_GET, () -> s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .range(range)
+                    .build()));
+        } catch (NoSuchKeyException e) {
+            return ResponseEntity.notFound().build();
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
 
+        GetObjectResponse objectResponse = s3Object.response();
+        ResponseEntity.BodyBuilder response = range != null && objectResponse.contentRange() != null
+                ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, objectResponse.contentRange())
+                : ResponseEntity.ok();
+        withDownloadHeaders(response, imageName);
+        withValidators(response, objectResponse.eTag(), lastModified != null ? lastModified
+                : objectResponse.lastModified() != null ? Date.from(objectResponse.lastModified()) : null);
+        if (objectResponse.contentLength() != null) {
+            response.contentLength(objectResponse.contentLength());
+            stageMetrics.recordDownloadSize(objectResponse.contentLength());
+        }
+
+        // Only complete objects are worth caching
+        ImageCache.Writer cacheWriter = range == null
+                ? imageCache.newWriter(imageName, objectResponse.eTag(), objectResponse.contentLength())
+                : null;
+
+        // The S3 stream is piped to the client through a fixed-size buffer instead of being read into memory
+        StreamingResponseBody body = outputStream -> {
+            try (s3Object) {
+                byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                int read;
+                while ((read = s3Object.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                    if (cacheWriter != null) {
+                        cacheWriter.write(buffer, 0, read);
+                    }
+                }
+                if (cacheWriter != null) {
+                    cacheWriter.commit();
+                }
+            } catch (IOException | RuntimeException e) {
+                if (cacheWriter != null) {
+                    cacheWriter.abort();
+                }
+                throw e;
+            }
+        };
+        return response.body(body);
+    }
+
+    /**
+     * Serves a resized variant. Renditions belong to the stored object, so images with the same content share them.
+     */
+    public ResponseEntity<StreamingResponseBody> downloadRendition(String imageName, int width, HttpHeaders requestHeaders) {
+        return renditionService.downloadRendition(objectKey(imageName, findMetadata(imageName)), width, requestHeaders);
+    }
+
+    // Deduplicated images live under their content key, older ones under their own name
+    private static String objectKey(String imageName, Optional<ImageMetadata> metadata) {
+        return metadata.map(ImageMetadata::getObjectKey).orElse(imageName);
+    }
+
+    /**
+     * Serves a cached copy only while its ETag still matches the object in S3.
+     * Recently validated entries are trusted without asking S3.
+     */
+    private boolean isStillValid(String imageName, String objectKey, ImageCache.CachedImage cached) {
+        if (imageCache.isFresh(cached)) {
+            return true;
+        }
+        try {
+            String currentETag = stageMetrics.record(StageMetrics.S3_HEAD, () -> s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .build())).eTag();
+            if (cached.eTag().equals(currentETag)) {
+                imageCache.markValidated(cached);
+                return true;
+            }
+        } catch (NoSuchKeyException e) {
+            log.debug("Cached image {} no longer exists in S3", imageName);
+        }
+        imageCache.invalidate(imageName);
+        return false;
+    }
+
+    private ResponseEntity<StreamingResponseBody> serveFromCache(String imageName, ImageCache.CachedImage cached,
+                                                                 HttpHeaders requestHeaders, String range,
+                                                                 Date lastModified) {
+        long size = cached.size();
+        long start = 0;
+        long end = size - 1;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (range != null) {
+            try {
+                HttpRange httpRange = requestHeaders.getRange().get(0);
+                start = httpRange.getRangeStart(size);
+                end = httpRange.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        long offset = start;
+        long length = end - start + 1;
+        withDownloadHeaders(response, imageName).contentLength(length);
+        stageMetrics.recordDownloadSize(length);
+        withValidators(response, cached.eTag(), lastModified);
+        return response.body(outputStream -> cached.writeTo(outputStream, offset, length));
+    }
+
+    /**
+     * Evaluates If-None-Match, or If-Modified-Since when no If-None-Match is sent, as described in RFC 9110.
+     */
+    static boolean isNotModified(HttpHeaders requestHeaders, String eTag, Date lastModified) {
+        if (requestHeaders == null) {
+            return false;
+        }
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            // GET uses the weak comparison, so W/ prefixes are ignored
+            return eTag != null && ifNoneMatch.stream()
+                    .anyMatch(tag -> tag.equals("*") || opaqueTag(tag).equals(opaqueTag(eTag)));
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = requestHeaders.getIfModifiedSince();
+            // HTTP dates have a one second resolution
+            return ifModifiedSince != -1 && lastModified.getTime() / 1000 * 1000 <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    // The metadata representation changes whenever the row is rewritten by an upload
+    private static String metadataETag(ImageMetadata metadata) {
+        long version = metadata.getLastUpdateDate() == null ? 0 : metadata.getLastUpdateDate().getTime();
+        return "W/\"" + metadata.getId() + "-" + version + "\"";
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag, Date lastModified) {
+        return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), eTag, lastModified).build();
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder response, String eTag, Date lastModified) {
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        if (lastModified != null) {
+            response.lastModified(lastModified.getTime());
+        }
+        return response;
+    }
+
+    private static ResponseEntity.BodyBuilder withDownloadHeaders(ResponseEntity.BodyBuilder response, String imageName) {
+        return response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + imageName + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * Returns the Range header value when it is a single, well-formed byte range that can be passed to S3 as is.
+     * Multiple ranges and malformed values are ignored, so the full object is served.
+     */
+    private static String singleByteRange(HttpHeaders requestHeaders) {
+        String range = requestHeaders == null ? null : requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (range == null) {
+            return null;
+        }
+        try {
+            return requestHeaders.getRange().size() == 1 ? range : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,107 @@
+package com.epam.aws;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.internal.util.EC2MetadataUtils;
+
+import java.time.Duration;
+
+/**
+ * Region and availability zone of the instance, read from the EC2 instance metadata service.
+ * The constructor reads them synchronously, retrying {@code startup-attempts} times, and fails startup when the
+ * metadata service never answers: the AWS clients are built once with this region, so a fallback would leave them
+ * pointing at the wrong region for the life of the process. Afterwards the values are refreshed in the background,
+ * so requests never wait for the metadata endpoint; the clients keep their region and a refresh only changes what
+ * is reported. With {@code aws.instance-metadata.enabled=false}, e.g. for local runs, the configured
+ * {@code aws.region} and {@code aws.availability-zone} are used.
+ */
+@Slf4j
+@Component
+public class InstanceIdentity {
+
+    private final boolean metadataEnabled;
+
+    private volatile Identity identity;
+
+    @Autowired
+    public InstanceIdentity(@Value("${aws.instance-metadata.enabled:true}") boolean metadataEnabled,
+                            @Value("${aws.region:us-east-1}") String fallbackRegion,
+                            @Value("${aws.availability-zone:unknown}") String fallbackAvailabilityZone,
+                            @Value("${aws.instance-metadata.startup-attempts:3}") int startupAttempts,
+                            @Value("${aws.instance-metadata.startup-retry-delay:PT1S}") Duration startupRetryDelay) {
+        this.metadataEnabled = metadataEnabled;
+        if (metadataEnabled) {
+            this.identity = readAtStartup(startupAttempts, startupRetryDelay, fallbackAvailabilityZone);
+        } else {
+            this.identity = new Identity(fallbackRegion, fallbackAvailabilityZone);
+            log.info("Instance metadata is disabled, using region {} and availability zone {}",
+                    fallbackRegion, fallbackAvailabilityZone);
+        }
+    }
+
+    private static Identity readAtStartup(int attempts, Duration retryDelay, String fallbackAvailabilityZone) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                String region = EC2MetadataUtils.getEC2InstanceRegion();
+                if (region == null) {
+                    throw SdkClientException.create("The instance metadata has no region");
+                }
+                String availabilityZone = EC2MetadataUtils.getAvailabilityZone();
+                Identity identity = new Identity(region, availabilityZone != null ? availabilityZone : fallbackAvailabilityZone);
+                log.info("Running in region {} and availability zone {}", identity.region(), identity.availabilityZone());
+                return identity;
+            } catch (SdkClientException e) {
+                if (attempt >= attempts) {
+                    throw new IllegalStateException("Could not read the region from the instance metadata after " + attempts
+                            + " attempts; set EC2_METADATA_ENABLED=false and AWS_REGION to run without it", e);
+                }
+                log.warn("Could not read the instance metadata (attempt {} of {}), retrying in {}",
+                        attempt, attempts, retryDelay, e);
+            }
+            try {
+                Thread.sleep(retryDelay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading the instance metadata", e);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${aws.instance-metadata.refresh-interval:PT10M}",
+            fixedDelayString = "${aws.instance-metadata.refresh-interval:PT10M}")
+    public void refresh() {
+        if (!metadataEnabled) {
+            return;
+        }
+        Identity current = identity;
+        try {
+            String region = EC2MetadataUtils.getEC2InstanceRegion();
+            String availabilityZone = EC2MetadataUtils.getAvailabilityZone();
+            identity = new Identity(region != null ? region : current.region(),
+                    availabilityZone != null ? availabilityZone : current.availabilityZone());
+        } catch (SdkClientException e) {
+            log.warn("Could not read the instance metadata, keeping region {} and availability zone {}",
+                    current.region(), current.availabilityZone(), e);
+        }
+    }
+
+    public String region() {
+        return identity.region();
+    }
+
+    public String availabilityZone() {
+        return identity.availabilityZone();
+    }
+
+    public Region awsRegion() {
+        return Region.of(identity.region());
+    }
+
+    private record Identity(String region, String availabilityZone) {
+    }
+}
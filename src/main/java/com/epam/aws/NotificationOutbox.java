@@ -0,0 +1,199 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactional outbox for upload notifications.
+ * Callers add messages inside the transaction that writes the image metadata, so a notification exists
+ * exactly when its metadata row does. A scheduled relay sends pending rows with SendMessageBatch and
+ * deletes the accepted ones; rejected rows are retried with exponential backoff. Rows are claimed with
+ * {@code FOR UPDATE SKIP LOCKED} (MySQL 8+), so several instances can relay without sending a row twice.
+ * The relay is the only batching in front of SQS: the size of every claimed batch and the time taken to send it
+ * are published as {@code notifications.outbox.batch.size} and {@code notifications.outbox.flush}.
+ */
+@Slf4j
+@Component
+public class NotificationOutbox {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_outbox (message, created_at, next_attempt_at, attempts) VALUES (?, ?, ?, 0)";
+
+    private static final String CLAIM_SQL = "SELECT id, message, attempts FROM notification_outbox"
+            + " WHERE next_attempt_at <= ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final SqsProcessor sqsProcessor;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Clock clock;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+    // Age of the oldest pending message as of the last relay run
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    @Autowired
+    public NotificationOutbox(JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+                              SqsProcessor sqsProcessor, MeterRegistry meterRegistry,
+                              @Value("${notifications.outbox.batch-size:100}") int batchSize,
+                              @Value("${notifications.outbox.initial-backoff:PT1S}") Duration initialBackoff,
+                              @Value("${notifications.outbox.max-backoff:PT5M}") Duration maxBackoff) {
+        this(jdbcTemplate, transactionOperations, sqsProcessor, meterRegistry, batchSize, initialBackoff, maxBackoff,
+                Clock.systemUTC());
+    }
+
+    NotificationOutbox(JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+                       SqsProcessor sqsProcessor, MeterRegistry meterRegistry, int batchSize,
+                       Duration initialBackoff, Duration maxBackoff, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.sqsProcessor = sqsProcessor;
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.clock = clock;
+
+        sentCounter = Counter.builder("notifications.outbox.sent").register(meterRegistry);
+        failedCounter = Counter.builder("notifications.outbox.failed").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("notifications.outbox.batch.size")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue((double) batchSize)
+                .register(meterRegistry);
+        flushTimer = Timer.builder("notifications.outbox.flush")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("notifications.outbox.lag", lagMillis, lag -> lag.get() / 1000.0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues messages for delivery. Must be called inside the transaction that commits the data they announce.
+     */
+    public void addAll(List<String> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(clock.millis());
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages.stream()
+                .map(message -> new Object[]{message, now, now})
+                .toList());
+    }
+
+    public void add(String message) {
+        addAll(List.of(message));
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.outbox.poll-interval:PT1S}")
+    public void relay() {
+        try {
+            // Keep draining while full batches go through; a failure waits for the next run
+            boolean more;
+            do {
+                more = Boolean.TRUE.equals(transactionOperations.execute(status -> relayBatch()));
+            } while (more);
+            updateLag();
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not relay the notification outbox", e);
+        } catch (RuntimeException e) {
+            // The claimed rows were rolled back and are picked up by the next run
+            log.error("Unexpected failure while relaying the notification outbox", e);
+        }
+    }
+
+    /**
+     * Claims and sends one batch of due messages.
+     *
+     * @return whether another batch may be waiting
+     */
+    boolean relayBatch() {
+        List<PendingMessage> pending = jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new PendingMessage(rs.getLong("id"), rs.getString("message"), rs.getInt("attempts")),
+                new Timestamp(clock.millis()), batchSize);
+        if (pending.isEmpty()) {
+            return false;
+        }
+
+        Map<String, String> messages = new LinkedHashMap<>();
+        pending.forEach(message -> messages.put(String.valueOf(message.id()), message.message()));
+        batchSizeSummary.record(pending.size());
+        List<String> failedIds = flushTimer.record(() -> send(messages));
+
+        List<Object[]> sent = pending.stream()
+                .filter(message -> !failedIds.contains(String.valueOf(message.id())))
+                .map(message -> new Object[]{message.id()})
+                .toList();
+        if (!sent.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM notification_outbox WHERE id = ?", sent);
+        }
+        List<Object[]> retries = pending.stream()
+                .filter(message -> failedIds.contains(String.valueOf(message.id())))
+                .map(message -> new Object[]{new Timestamp(clock.millis() + backoff(message.attempts()).toMillis()), message.id()})
+                .toList();
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE notification_outbox SET attempts = attempts + 1, next_attempt_at = ? WHERE id = ?", retries);
+        }
+
+        sentCounter.increment(sent.size());
+        failedCounter.increment(retries.size());
+        return retries.isEmpty() && pending.size() == batchSize;
+    }
+
+    // Returns the ids of the messages that were not sent
+    private List<String> send(Map<String, String> messages) {
+        try {
+            return sqsProcessor.sendMessageBatch(messages);
+        } catch (RuntimeException e) {
+            // Nothing is known to be sent, so the whole batch backs off instead of being claimed again at once
+            log.warn("Could not send a batch of {} outbox messages", messages.size(), e);
+            return new ArrayList<>(messages.keySet());
+        }
+    }
+
+    Duration backoff(int attempts) {
+        // initialBackoff * 2^attempts, without overflowing for long failure streaks
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void updateLag() {
+        List<Timestamp> oldest = jdbcTemplate.query("SELECT created_at FROM notification_outbox ORDER BY id LIMIT 1",
+                (rs, rowNum) -> rs.getTimestamp("created_at"));
+        lagMillis.set(oldest.isEmpty() ? 0 : Math.max(0, clock.millis() - oldest.get(0).getTime()));
+    }
+
+    long lagMillis() {
+        return lagMillis.get();
+    }
+
+    private record PendingMessage(long id, String message, int attempts) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks random image_metadata rows without scanning the table.
+ * The id range is cached and refreshed periodically, together with a size estimate: the smaller of the id span and
+ * the table_rows statistic, neither of which needs a scan. Tables estimated at up to {@value #SMALL_TABLE_ROWS}
+ * rows are read whole with one query and shuffled. On larger tables every pick draws an id from the range and
+ * probes the primary key with {@code id >= ?}, wrapping around to the lowest id when the probe lands past the last
+ * row. A probe returns the first row at or after the drawn id, so a row's chance grows with the gap in the ids
+ * before it: after deleting most rows of a range, the survivors next to the largest gaps dominate the picks.
+ */
+@Slf4j
+@Component
+public class RandomImageSelector {
+
+    static final int MAX_COUNT = 100;
+
+    // Below this many rows one query reading them all is cheaper than probing, and unbiased
+    static final int SMALL_TABLE_ROWS = 2 * MAX_COUNT;
+
+    private static final String PROBE_SQL = "SELECT * FROM image_metadata WHERE id >= ? ORDER BY id LIMIT 1";
+
+    private static final String SMALL_TABLE_SQL = "SELECT * FROM image_metadata ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile IdRange idRange;
+
+    @Autowired
+    public RandomImageSelector(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // MIN and MAX on the primary key are resolved from the index ends; table_rows is InnoDB's estimate and may be stale
+    @Scheduled(fixedDelayString = "${images.random.id-range-refresh:PT1M}")
+    public void refreshIdRange() {
+        try {
+            idRange = jdbcTemplate.queryForObject("SELECT MIN(id) AS min_id, MAX(id) AS max_id,"
+                            + " (SELECT table_rows FROM information_schema.tables"
+                            + " WHERE table_schema = DATABASE() AND table_name = 'image_metadata') AS estimated_rows"
+                            + " FROM image_metadata",
+                    (rs, rowNum) -> {
+                        long min = rs.getLong("min_id");
+                        if (rs.wasNull()) {
+                            return IdRange.EMPTY;
+                        }
+                        long max = rs.getLong("max_id");
+                        long estimatedRows = rs.getLong("estimated_rows");
+                        // There cannot be more rows than ids in the range
+                        long span = max - min + 1;
+                        return new IdRange(min, max, rs.wasNull() ? span : Math.min(estimatedRows, span));
+                    });
+        } catch (DataAccessException e) {
+            log.warn("Could not refresh the image id range", e);
+        }
+    }
+
+    public Optional<ImageMetadata> pickOne() {
+        List<ImageMetadata> picked = pick(1);
+        return picked.isEmpty() ? Optional.empty() : Optional.of(picked.get(0));
+    }
+
+    /**
+     * Returns up to {@code count} distinct random rows, fewer when the table is smaller.
+     * Costs at most one query on small tables and about {@code 3 * count} probes on large ones.
+     */
+    public List<ImageMetadata> pick(int count) {
+        IdRange range = idRange;
+        // An empty range is refreshed on every call, so the first uploads show up right away
+        if (range == null || range == IdRange.EMPTY) {
+            refreshIdRange();
+            range = idRange;
+        }
+        if (range == null || range == IdRange.EMPTY) {
+            return List.of();
+        }
+        int limit = Math.min(count, MAX_COUNT);
+        if (range.estimatedRows() <= SMALL_TABLE_ROWS) {
+            List<ImageMetadata> rows = new ArrayList<>(
+                    jdbcTemplate.query(SMALL_TABLE_SQL, new ImageMetadataRowMapper(), SMALL_TABLE_ROWS + 1));
+            if (rows.size() <= SMALL_TABLE_ROWS) {
+                Collections.shuffle(rows, ThreadLocalRandom.current());
+                return List.copyOf(rows.subList(0, Math.min(limit, rows.size())));
+            }
+            // The estimate is stale, so the table is probed until the next refresh
+            range = new IdRange(range.min(), range.max(), SMALL_TABLE_ROWS + 1);
+            idRange = range;
+        }
+        return probe(range, limit);
+    }
+
+    private List<ImageMetadata> probe(IdRange cachedRange, int wanted) {
+        IdRange range = cachedRange;
+        boolean refreshed = false;
+        List<ImageMetadata> picked = new ArrayList<>(wanted);
+        Set<Long> seen = new HashSet<>();
+        // Duplicates are retried a bounded number of times instead of falling back to a scan
+        for (int attempt = 0; picked.size() < wanted && attempt < wanted * 3; attempt++) {
+            long id = ThreadLocalRandom.current().nextLong(range.min(), range.max() + 1);
+            Optional<ImageMetadata> row = probe(id);
+            if ((row.isEmpty() || row.get().getId() > range.max()) && !refreshed) {
+                // Rows at the end were deleted or added since the last refresh
+                refreshIdRange();
+                refreshed = true;
+                if (idRange == null || idRange == IdRange.EMPTY) {
+                    break;
+                }
+                range = idRange;
+            }
+            if (row.isEmpty()) {
+                row = probe(range.min());
+            }
+            if (row.isEmpty()) {
+                break;
+            }
+            if (seen.add(row.get().getId())) {
+                picked.add(row.get());
+            }
+        }
+        return picked;
+    }
+
+    private Optional<ImageMetadata> probe(long id) {
+        return jdbcTemplate.query(PROBE_SQL, new ImageMetadataRowMapper(), id).stream().findFirst();
+    }
+
+    private record IdRange(long min, long max, long estimatedRows) {
+        static final IdRange EMPTY = new IdRange(0, -1, 0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.epam.aws;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by the threads calling a rate-limited API, e.g. the SNS control plane.
+ * Permits are handed out evenly at {@code permitsPerSecond}; up to {@code burst} permits saved up during
+ * quiet periods can be taken at once. Callers over the rate are put to sleep until their permit is due,
+ * so a pool of workers never exceeds the budget no matter how many threads it has.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier nanoTime;
+
+    // Guarded by this; the time at which the next permit becomes free
+    private long nextFreeNanos;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, int burst, LongSupplier nanoTime) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.nanoTime = nanoTime;
+        this.nextFreeNanos = nanoTime.getAsLong() - burstNanos;
+    }
+
+    /**
+     * Waits until a permit is available.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes the next permit and returns how long the caller has to wait for it, zero if it is available now.
+     */
+    synchronized long reserve() {
+        long now = nanoTime.getAsLong();
+        // Permits not taken while idle accumulate up to the burst size
+        long slot = Math.max(nextFreeNanos, now - burstNanos);
+        nextFreeNanos = slot + intervalNanos;
+        return Math.max(0, slot - now);
+    }
+
+    public Duration interval() {
+        return Duration.ofNanos(intervalNanos);
+    }
+}
@@ -1,15 +1,23 @@
 package com.epam.aws;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
-import software.amazon.awssdk.regions.internal.util.EC2MetadataUtils;
 
 @RestController
 public class RegionController {
+
+    private final InstanceIdentity instanceIdentity;
+
+    @Autowired
+    public RegionController(InstanceIdentity instanceIdentity) {
+        this.instanceIdentity = instanceIdentity;
+    }
+
     @GetMapping("/region-info")
     public String getRegionInfo() {
-        String region = EC2MetadataUtils.getEC2InstanceRegion();
-        String az = EC2MetadataUtils.getAvailabilityZone();
+        String region = instanceIdentity.region();
+        String az = instanceIdentity.availabilityZone();
         return "{\"Region\": \""+region+"\", \"AZ\": \""+az+"\"}";
     }
 }
@@ -0,0 +1,241 @@
+package com.epam.aws;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.BlockingInputStreamAsyncRequestBody;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams an input stream to S3 without holding the whole object in memory.
+ * Objects up to the multipart threshold are sent with a single streamed PutObject,
+ * larger ones are split into parts that are uploaded concurrently. At most
+ * {@code maxPartsInFlight} part buffers exist per upload, so heap use is bounded
+ * by {@code partSize * maxPartsInFlight} regardless of the object size.
+ * When an {@link S3AsyncClient} is configured, the stream is handed to it instead and the
+ * async client does the splitting into parts.
+ */
+@Slf4j
+@Component
+public class S3MultipartUploader {
+
+    // S3 limits: parts must be at least 5 MiB (except the last one) and an upload has at most 10000 parts
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
+    private final Executor partExecutor;
+    private final int partSize;
+    private final int maxPartsInFlight;
+    private final long multipartThreshold;
+
+    @Autowired
+    public S3MultipartUploader(S3Client s3Client,
+                               ObjectProvider<S3AsyncClient> s3AsyncClient,
+                               @Qualifier("s3PartUploadExecutor") Executor partExecutor,
+                               @Value("${images.upload.part-size:8388608}") int partSize,
+                               @Value("${images.upload.max-parts-in-flight:4}") int maxPartsInFlight,
+                               @Value("${images.upload.multipart-threshold:16777216}") long multipartThreshold) {
+        this(s3Client, s3AsyncClient.getIfAvailable(), partExecutor, partSize, maxPartsInFlight, multipartThreshold);
+    }
+
+    S3MultipartUploader(S3Client s3Client, S3AsyncClient s3AsyncClient, Executor partExecutor,
+                        int partSize, int maxPartsInFlight, long multipartThreshold) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("images.upload.part-size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        if (maxPartsInFlight < 1) {
+            throw new IllegalArgumentException("images.upload.max-parts-in-flight must be positive");
+        }
+        this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
+        this.partExecutor = partExecutor;
+        this.partSize = partSize;
+        this.maxPartsInFlight = maxPartsInFlight;
+        this.multipartThreshold = Math.max(multipartThreshold, partSize);
+    }
+
+    /**
+     * Uploads {@code contentLength} bytes from {@code inputStream} to {@code bucket/key}.
+     * The stream is not closed.
+     *
+     * @return the ETag S3 assigned to the stored object
+     */
+    public String upload(String bucket, String key, InputStream inputStream, long contentLength) throws IOException {
+        if (s3AsyncClient != null) {
+            return uploadAsync(bucket, key, inputStream, contentLength);
+        }
+        if (contentLength <= multipartThreshold) {
+            return s3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build(),
+                    RequestBody.fromInputStream(inputStream, contentLength)).eTag();
+        }
+        return uploadMultipart(bucket, key, inputStream, contentLength);
+    }
+
+    private String uploadAsync(String bucket, String key, InputStream inputStream, long contentLength) throws IOException {
+        BlockingInputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingInputStream(contentLength);
+        CompletableFuture<PutObjectResponse> response = s3AsyncClient.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build(), body);
+        try {
+            // Blocks until the client has consumed the whole stream, so the stream is not read after returning
+            body.writeInputStream(inputStream);
+            return response.join().eTag();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Could not upload " + key, e.getCause());
+        } catch (UncheckedIOException e) {
+            // Reading the stream failed
+            response.cancel(false);
+            throw e.getCause();
+        }
+    }
+
+    private String uploadMultipart(String bucket, String key, InputStream inputStream, long contentLength) throws IOException {
+        int effectivePartSize = effectivePartSize(contentLength);
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build()).uploadId();
+
+        Semaphore inFlight = new Semaphore(maxPartsInFlight);
+        Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            while (true) {
+                inFlight.acquire();
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null) {
+                    buffer = new byte[effectivePartSize];
+                }
+                int length = readFully(inputStream, buffer);
+                if (length == 0 && partNumber > 1) {
+                    freeBuffers.add(buffer);
+                    inFlight.release();
+                    break;
+                }
+                // Fail fast instead of reading the rest of the stream once a part has failed
+                parts.stream().filter(CompletableFuture::isCompletedExceptionally).findFirst().ifPresent(CompletableFuture::join);
+
+                byte[] partBuffer = buffer;
+                int currentPart = partNumber++;
+                parts.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, currentPart, partBuffer, length);
+                    } finally {
+                        freeBuffers.add(partBuffer);
+                        inFlight.release();
+                    }
+                }, partExecutor));
+
+                if (length < partBuffer.length) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+            completedParts.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            log.debug("Completing multipart upload of {} with {} parts", key, completedParts.size());
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()).eTag();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, parts);
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abort(bucket, key, uploadId, parts);
+            if (e instanceof CompletionException && e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        // ByteArrayInputStream supports mark/reset, so the SDK can retry the part without copying the buffer
+        String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build(),
+                RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private void abort(String bucket, String key, String uploadId, List<CompletableFuture<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(false));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException e) {
+            log.warn("Could not abort multipart upload {} of {}", uploadId, key, e);
+        }
+    }
+
+    int effectivePartSize(long contentLength) {
+        long minimumForPartLimit = (contentLength + MAX_PARTS - 1) / MAX_PARTS;
+        return (int) Math.max(partSize, minimumForPartLimit);
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
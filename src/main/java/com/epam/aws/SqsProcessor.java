@@ -1,30 +1,82 @@
 package com.epam.aws;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
 @Component
 public class SqsProcessor {
 
+    // SendMessageBatch accepts at most 10 entries
+    static final int MAX_BATCH_SIZE = 10;
+
     private final SqsClient sqsClient;
 
     private final String queueUrl;
 
+    private final StageMetrics stageMetrics;
+
     @Autowired
     public SqsProcessor(SqsClient sqsClient,
-                        @Value("${aws.sqs.queue.url}") String queueUrl) {
+                        @Value("${aws.sqs.queue.url}") String queueUrl,
+                        StageMetrics stageMetrics) {
         this.sqsClient = sqsClient;
         this.queueUrl = queueUrl;
+        this.stageMetrics = stageMetrics;
+    }
+
+    SqsProcessor(SqsClient sqsClient, String queueUrl) {
+        this(sqsClient, queueUrl, new StageMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Sends the messages with as few SendMessageBatch calls as possible.
+     * Keys are used as batch entry ids, so they must be unique and at most 80 alphanumeric, '-' or '_' characters.
+     *
+     * @return ids of the messages that could not be sent
+     */
+    protected List<String> sendMessageBatch(Map<String, String> messagesById) {
+        List<String> failedIds = new ArrayList<>();
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(MAX_BATCH_SIZE);
+        for (Map.Entry<String, String> message : messagesById.entrySet()) {
+            entries.add(SendMessageBatchRequestEntry.builder()
+                    .id(message.getKey())
+                    .messageBody(message.getValue())
+                    .build());
+            if (entries.size() == MAX_BATCH_SIZE) {
+                failedIds.addAll(sendBatch(entries));
+                entries = new ArrayList<>(MAX_BATCH_SIZE);
+            }
+        }
+        if (!entries.isEmpty()) {
+            failedIds.addAll(sendBatch(entries));
+        }
+        return failedIds;
     }
-    protected void sendMessage(String message){
-        // Send message to SQS
-        SendMessageRequest sendMsgRequest = SendMessageRequest.builder()
-                .queueUrl(queueUrl)
-                .messageBody(message)
-                .build();
-        sqsClient.sendMessage(sendMsgRequest);
+
+    private List<String> sendBatch(List<SendMessageBatchRequestEntry> entries) {
+        try {
+            List<BatchResultErrorEntry> failed = stageMetrics.record(StageMetrics.SQS_SEND, () -> sqsClient.sendMessageBatch(
+                    SendMessageBatchRequest.builder()
+                            .queueUrl(queueUrl)
+                            .entries(entries)
+                            .build())).failed();
+            failed.forEach(error -> log.warn("Could not send message {} to SQS: {} {}", error.id(), error.code(), error.message()));
+            return failed.stream().map(BatchResultErrorEntry::id).toList();
+        } catch (RuntimeException e) {
+            log.error("Could not send a batch of {} messages to SQS", entries.size(), e);
+            return entries.stream().map(SendMessageBatchRequestEntry::id).toList();
+        }
     }
-}
\ No newline at end of file
+}
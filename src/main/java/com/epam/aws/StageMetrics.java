@@ -0,0 +1,93 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency of the calls an image request is made of, so a slow upload or download can be traced to S3, MySQL or SQS.
+ * Every call is recorded by the {@value #STAGE_TIMER} timer, tagged with the stage and its outcome
+ * ({@code success}, {@code not_found} or {@code error}), with a percentile histogram for the Prometheus endpoint.
+ */
+@Component
+public class StageMetrics {
+
+    static final String STAGE_TIMER = "images.stage";
+
+    public static final String S3_PUT = "s3.put";
+    public static final String S3_GET = "s3.get";
+    public static final String S3_HEAD = "s3.head";
+    public static final String S3_DELETE = "s3.delete";
+    public static final String JDBC_INSERT = "jdbc.insert";
+    public static final String JDBC_SELECT = "jdbc.select";
+    public static final String JDBC_DELETE = "jdbc.delete";
+    public static final String SQS_SEND = "sqs.send";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary downloadSize;
+
+    @Autowired
+    public StageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        uploadSize = sizeSummary("images.upload.size");
+        downloadSize = sizeSummary("images.download.size");
+    }
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Runs the call and records its duration under the stage, whether it returns or throws.
+     */
+    public <T, E extends Exception> T record(String stage, Stage<T, E> call) throws E {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } catch (NoSuchKeyException | EmptyResultDataAccessException e) {
+            outcome = "not_found";
+            throw e;
+        } finally {
+            sample.stop(timer(stage, outcome));
+        }
+    }
+
+    public void recordUploadSize(long bytes) {
+        uploadSize.record(bytes);
+    }
+
+    public void recordDownloadSize(long bytes) {
+        downloadSize.record(bytes);
+    }
+
+    private Timer timer(String stage, String outcome) {
+        return timers.computeIfAbsent(stage + ' ' + outcome, key -> Timer.builder(STAGE_TIMER)
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private DistributionSummary sizeSummary(String name) {
+        // Bounds the histogram buckets to the sizes images actually have
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(5.0 * 1024 * 1024 * 1024)
+                .register(meterRegistry);
+    }
+}
@@ -1,8 +1,12 @@
 package com.epam.aws;
 
+import com.epam.aws.model.SubscriptionRequest;
+import com.epam.aws.model.SubscriptionResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -15,9 +19,13 @@ public class SubscriptionController {
 
     private final SubscriptionService subscriptionService;
 
+    private final SubscriptionImportService subscriptionImportService;
+
     @Autowired
-    public SubscriptionController(SubscriptionService subscriptionService){
+    public SubscriptionController(SubscriptionService subscriptionService,
+                                  SubscriptionImportService subscriptionImportService){
         this.subscriptionService = subscriptionService;
+        this.subscriptionImportService = subscriptionImportService;
     }
 
     @PostMapping("/subscribe")
@@ -25,6 +33,16 @@ public class SubscriptionController {
         return subscriptionService.subscribe(email, messageTypes);
     }
 
+    @PostMapping(value = "/subscribe/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SubscriptionResult>> subscribeAll(@RequestBody List<SubscriptionRequest> requests) {
+        return subscriptionImportService.subscribeAll(requests);
+    }
+
+    @PostMapping(value = "/subscribe/batch", consumes = "text/csv")
+    public ResponseEntity<List<SubscriptionResult>> subscribeAllCsv(@RequestBody String csv) {
+        return subscriptionImportService.subscribeAllCsv(csv);
+    }
+
     @PostMapping("/unsubscribe")
     public ResponseEntity<String> unsubscribe(@RequestParam String email) {
         return subscriptionService.unsubscribe(email);
@@ -0,0 +1,154 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionEntity;
+import com.epam.aws.repository.SubscriptionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SetSubscriptionAttributesRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Sets the filter policy of subscriptions once they are confirmed. A filter cannot be set while a subscription
+ * is pending, so {@link SubscriptionService#subscribe} stores the wanted message types and this job applies them.
+ * Each run takes the rows whose check is due, in batches, looks up their subscriptions in the index and sets the
+ * filter policies concurrently, no faster than {@code max-rate} calls per second. Pending addresses are never in
+ * the index, so the topic is not listed for them; the index sync finds confirmations, and rows not found yet are
+ * checked again with exponential backoff and dropped after {@code max-attempts}, when SNS has long expired the
+ * confirmation link.
+ */
+@Slf4j
+@Component
+public class SubscriptionFilterProcessor {
+
+    private final SnsClient snsClient;
+    private final SubscriptionRepository subscriptionRepository;
+    private final SubscriptionIndex subscriptionIndex;
+    private final Executor snsExecutor;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Clock clock;
+
+    @Autowired
+    public SubscriptionFilterProcessor(@Lazy SnsClient snsClient, SubscriptionRepository subscriptionRepository,
+                                       SubscriptionIndex subscriptionIndex,
+                                       @Qualifier("snsExecutor") Executor snsExecutor,
+                                       @Value("${notifications.subscription-filter.max-rate:10}") double maxRate,
+                                       @Value("${notifications.subscription-filter.batch-size:100}") int batchSize,
+                                       @Value("${notifications.subscription-filter.max-attempts:100}") int maxAttempts,
+                                       @Value("${notifications.subscription-filter.initial-backoff:PT1M}") Duration initialBackoff,
+                                       @Value("${notifications.subscription-filter.max-backoff:PT1H}") Duration maxBackoff) {
+        this(snsClient, subscriptionRepository, subscriptionIndex, snsExecutor, new RateLimiter(maxRate, 1), batchSize,
+                maxAttempts, initialBackoff, maxBackoff, Clock.systemUTC());
+    }
+
+    SubscriptionFilterProcessor(SnsClient snsClient, SubscriptionRepository subscriptionRepository,
+                                SubscriptionIndex subscriptionIndex, Executor snsExecutor, RateLimiter rateLimiter,
+                                int batchSize, int maxAttempts, Duration initialBackoff, Duration maxBackoff, Clock clock) {
+        this.snsClient = snsClient;
+        this.subscriptionRepository = subscriptionRepository;
+        this.subscriptionIndex = subscriptionIndex;
+        this.snsExecutor = snsExecutor;
+        this.rateLimiter = rateLimiter;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.subscription-filter.interval:PT1M}")
+    public void checkAndProcessSubscriptions() {
+        try {
+            List<SubscriptionEntity> due;
+            do {
+                due = subscriptionRepository.findDue(clock.instant(), PageRequest.of(0, batchSize));
+                if (!due.isEmpty()) {
+                    processBatch(due);
+                }
+                // Processed rows are deleted or rescheduled, so the next query returns the next batch
+            } while (due.size() == batchSize);
+        } catch (SdkException | DataAccessException e) {
+            log.warn("Could not process pending subscription filters", e);
+        }
+    }
+
+    void processBatch(List<SubscriptionEntity> due) {
+        Map<String, String> subscriptionArns = subscriptionIndex.findSubscriptionArns(due.stream()
+                .map(SubscriptionEntity::getEmail)
+                .collect(Collectors.toSet()));
+
+        List<CompletableFuture<Boolean>> applied = due.stream()
+                .map(entity -> {
+                    String subscriptionArn = subscriptionArns.get(entity.getEmail());
+                    return subscriptionArn == null
+                            ? CompletableFuture.completedFuture(false)
+                            : CompletableFuture.supplyAsync(() -> applyFilter(subscriptionArn, entity), snsExecutor);
+                })
+                .toList();
+
+        List<SubscriptionEntity> done = new ArrayList<>();
+        List<SubscriptionEntity> retries = new ArrayList<>();
+        for (int i = 0; i < due.size(); i++) {
+            SubscriptionEntity entity = due.get(i);
+            if (applied.get(i).join()) {
+                done.add(entity);
+            } else if (entity.getAttempts() + 1 >= maxAttempts) {
+                log.info("Giving up on the filter for {}, the subscription was not confirmed", entity.getEmail());
+                done.add(entity);
+            } else {
+                entity.setNextCheckAt(clock.instant().plus(backoff(entity.getAttempts())));
+                entity.setAttempts(entity.getAttempts() + 1);
+                retries.add(entity);
+            }
+        }
+        subscriptionRepository.deleteAllInBatch(done);
+        subscriptionRepository.saveAll(retries);
+        log.info("Processed {} pending subscription filters: {} done, {} still pending", due.size(), done.size(), retries.size());
+    }
+
+    private boolean applyFilter(String subscriptionArn, SubscriptionEntity entity) {
+        try {
+            rateLimiter.acquire();
+            log.info("Setting the filter for {} with the subscription ARN {}", entity.getEmail(), subscriptionArn);
+            snsClient.setSubscriptionAttributes(SetSubscriptionAttributesRequest.builder()
+                    .subscriptionArn(subscriptionArn)
+                    .attributeName("FilterPolicy")
+                    .attributeValue(SubscriptionService.filterPolicy(entity.getMessageTypes()))
+                    .build());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (SdkException e) {
+            // Throttling included; the row is retried with backoff like a pending one
+            log.warn("Could not set the filter for {}", entity.getEmail(), e);
+            return false;
+        }
+    }
+
+    Duration backoff(int attempts) {
+        // initialBackoff * 2^attempts, without overflowing for long streaks
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
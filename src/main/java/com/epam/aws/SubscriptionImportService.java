@@ -0,0 +1,202 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionRequest;
+import com.epam.aws.model.SubscriptionResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SubscribeRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Subscribes a list of addresses at once, e.g. when a team is onboarded. Addresses are validated first, then
+ * subscribed concurrently on the SNS workers, no faster than {@code max-rate} calls per second. The message types
+ * of all subscribed addresses are stored with one batch insert and applied by {@link SubscriptionFilterProcessor}
+ * once the addresses confirm. The report lists every address in request order.
+ */
+@Slf4j
+@Service
+public class SubscriptionImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO subscription_entity (email, message_types, attempts) VALUES (?, ?, 0)";
+
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    // Message types are image extensions and end up quoted in a filter policy
+    private static final Pattern MESSAGE_TYPE = Pattern.compile("[A-Za-z0-9]+");
+
+    private final SnsClient snsClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor snsExecutor;
+    private final RateLimiter rateLimiter;
+    private final int maxEntries;
+
+    @Value("${aws.sns.topic.arn}")
+    private String topicArn;
+
+    @Autowired
+    public SubscriptionImportService(@Lazy SnsClient snsClient, JdbcTemplate jdbcTemplate,
+                                     @Qualifier("snsExecutor") Executor snsExecutor,
+                                     @Value("${notifications.subscription-import.max-rate:20}") double maxRate,
+                                     @Value("${notifications.subscription-import.max-entries:500}") int maxEntries) {
+        this(snsClient, jdbcTemplate, snsExecutor, new RateLimiter(maxRate, 1), maxEntries);
+    }
+
+    SubscriptionImportService(SnsClient snsClient, JdbcTemplate jdbcTemplate, Executor snsExecutor,
+                              RateLimiter rateLimiter, int maxEntries) {
+        this.snsClient = snsClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snsExecutor = snsExecutor;
+        this.rateLimiter = rateLimiter;
+        this.maxEntries = maxEntries;
+    }
+
+    public ResponseEntity<List<SubscriptionResult>> subscribeAll(List<SubscriptionRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > maxEntries) {
+            return ResponseEntity.badRequest().build();
+        }
+        int count = requests.size();
+        SubscriptionResult[] results = new SubscriptionResult[count];
+        List<CompletableFuture<String>> subscriptions = new ArrayList<>(count);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            SubscriptionRequest request = requests.get(i);
+            String email = request == null || request.getEmail() == null ? null : request.getEmail().trim();
+            String validationError = validate(email, request == null ? null : request.getMessageTypes(), seen);
+            if (validationError != null) {
+                results[i] = SubscriptionResult.failed(email, validationError);
+                subscriptions.add(null);
+                continue;
+            }
+            subscriptions.add(CompletableFuture.supplyAsync(() -> subscribe(email), snsExecutor));
+        }
+
+        List<Integer> subscribed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (subscriptions.get(i) == null) {
+                continue;
+            }
+            String error = subscriptions.get(i).join();
+            if (error == null) {
+                subscribed.add(i);
+            } else {
+                results[i] = SubscriptionResult.failed(requests.get(i).getEmail().trim(), error);
+            }
+        }
+
+        List<Integer> withTypes = subscribed.stream()
+                .filter(i -> !messageTypes(requests.get(i).getMessageTypes()).isEmpty())
+                .toList();
+        if (!withTypes.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, withTypes.stream()
+                        .map(i -> new Object[]{requests.get(i).getEmail().trim(),
+                                String.join(",", messageTypes(requests.get(i).getMessageTypes()))})
+                        .toList());
+            } catch (DataAccessException e) {
+                // Without the row the address would get every notification; subscribing again is safe, SNS keeps one
+                log.error("Could not save the message types of {} imported subscriptions", withTypes.size(), e);
+                withTypes.forEach(i -> results[i] = SubscriptionResult.failed(requests.get(i).getEmail().trim(),
+                        "Could not save the message types: " + e.getMessage()));
+            }
+        }
+        subscribed.stream()
+                .filter(i -> results[i] == null)
+                .forEach(i -> results[i] = SubscriptionResult.subscribed(requests.get(i).getEmail().trim(),
+                        "Subscription request sent, waiting for confirmation"));
+
+        log.info("Imported {} of {} subscriptions", IntStream.range(0, count).filter(i -> results[i].isSubscribed()).count(), count);
+        return ResponseEntity.ok(List.of(results));
+    }
+
+    public ResponseEntity<List<SubscriptionResult>> subscribeAllCsv(String csv) {
+        return subscribeAll(parseCsv(csv));
+    }
+
+    /**
+     * Reads one address per line: the email followed by its message types, all separated by commas, e.g.
+     * {@code ann@example.com,jpg,png}. Blank lines and a header line starting with {@code email} are skipped.
+     */
+    static List<SubscriptionRequest> parseCsv(String csv) {
+        if (csv == null) {
+            return List.of();
+        }
+        List<SubscriptionRequest> requests = new ArrayList<>();
+        for (String line : csv.split("\\R")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> columns = Arrays.stream(line.split(",", -1))
+                    .map(column -> column.trim().replace("\"", ""))
+                    .toList();
+            if (requests.isEmpty() && columns.get(0).toLowerCase(Locale.ROOT).equals("email")) {
+                continue;
+            }
+            requests.add(new SubscriptionRequest(columns.get(0), new ArrayList<>(columns.subList(1, columns.size()))));
+        }
+        return requests;
+    }
+
+    private static String validate(String email, List<String> messageTypes, Set<String> seen) {
+        if (email == null || !EMAIL.matcher(email).matches()) {
+            return "Invalid email address";
+        }
+        List<String> types = messageTypes(messageTypes);
+        if (!types.stream().allMatch(type -> MESSAGE_TYPE.matcher(type).matches())) {
+            return "Message types must be image extensions";
+        }
+        if (!seen.add(email.toLowerCase(Locale.ROOT))) {
+            return "Duplicate address";
+        }
+        return null;
+    }
+
+    // Blank entries come from trailing commas in CSV or empty strings in JSON
+    private static List<String> messageTypes(List<String> messageTypes) {
+        if (messageTypes == null) {
+            return List.of();
+        }
+        return messageTypes.stream()
+                .filter(type -> type != null && !type.isBlank())
+                .map(String::trim)
+                .distinct()
+                .toList();
+    }
+
+    // Returns the error message, or null once SNS has sent the confirmation email
+    private String subscribe(String email) {
+        try {
+            rateLimiter.acquire();
+            snsClient.subscribe(SubscribeRequest.builder()
+                    .topicArn(topicArn)
+                    .protocol("email")
+                    .endpoint(email)
+                    .build());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Import was interrupted";
+        } catch (SdkException e) {
+            log.warn("Could not subscribe {}", email, e);
+            return "Could not subscribe: " + e.getMessage();
+        }
+    }
+}
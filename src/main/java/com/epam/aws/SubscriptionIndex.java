@@ -0,0 +1,126 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionIndexEntry;
+import com.epam.aws.repository.SubscriptionIndexRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.ListSubscriptionsByTopicRequest;
+import software.amazon.awssdk.services.sns.model.Subscription;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Email to subscription ARN index of the notification topic, persisted in the subscription_index table,
+ * so unsubscribing does not have to list the topic. A background sync pages through all subscriptions of the
+ * topic and brings the table in line: new confirmations are added, changed ARNs updated and subscriptions
+ * removed outside the application deleted. Lookups are served from the table alone, so the topic is listed
+ * once per sync no matter how many addresses are looked up; addresses confirmed since the last sync are found
+ * after the next one.
+ */
+@Slf4j
+@Component
+public class SubscriptionIndex {
+
+    private final SnsClient snsClient;
+    private final SubscriptionIndexRepository repository;
+    private final TransactionOperations transactionOperations;
+
+    @Value("${aws.sns.topic.arn}")
+    private String topicArn;
+
+    @Autowired
+    public SubscriptionIndex(@Lazy SnsClient snsClient, SubscriptionIndexRepository repository,
+                             TransactionOperations transactionOperations) {
+        this.snsClient = snsClient;
+        this.repository = repository;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public Optional<String> findSubscriptionArn(String email) {
+        return repository.findById(email).map(SubscriptionIndexEntry::getSubscriptionArn);
+    }
+
+    /**
+     * Returns the ARNs of those addresses that have a confirmed subscription as of the last sync.
+     */
+    public Map<String, String> findSubscriptionArns(Set<String> emails) {
+        Map<String, String> found = new HashMap<>();
+        repository.findAllById(emails).forEach(entry -> found.put(entry.getEmail(), entry.getSubscriptionArn()));
+        return found;
+    }
+
+    public void remove(String email) {
+        repository.deleteById(email);
+    }
+
+    /**
+     * Lists the whole topic first and only then opens a transaction, so no database connection is held
+     * while SNS pages are fetched.
+     */
+    @Scheduled(initialDelayString = "${notifications.subscription-index.initial-delay:PT30S}",
+            fixedDelayString = "${notifications.subscription-index.sync-interval:PT5M}")
+    public void sync() {
+        try {
+            Map<String, String> listed = topicSubscriptions()
+                    .collect(Collectors.toMap(Subscription::endpoint, Subscription::subscriptionArn,
+                            (first, second) -> second));
+            transactionOperations.executeWithoutResult(status -> apply(listed));
+        } catch (SdkException | DataAccessException e) {
+            // The index is completed by the next run; until then addresses missing from it are not found
+            log.warn("Could not sync the subscription index", e);
+        }
+    }
+
+    private void apply(Map<String, String> listed) {
+        Map<String, SubscriptionIndexEntry> indexed = repository.findAll().stream()
+                .collect(Collectors.toMap(SubscriptionIndexEntry::getEmail, Function.identity()));
+
+        Map<String, SubscriptionIndexEntry> changed = new HashMap<>();
+        listed.forEach((email, arn) -> {
+            SubscriptionIndexEntry entry = indexed.remove(email);
+            if (entry == null || !arn.equals(entry.getSubscriptionArn())) {
+                changed.put(email, new SubscriptionIndexEntry(email, arn));
+            }
+        });
+        // What is left was not listed anymore, e.g. unsubscribed through the link in a notification
+        List<SubscriptionIndexEntry> removed = List.copyOf(indexed.values());
+
+        repository.saveAll(changed.values());
+        repository.deleteAllInBatch(removed);
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            log.info("Subscription index synced: {} added or updated, {} removed", changed.size(), removed.size());
+        }
+    }
+
+    private Stream<Subscription> topicSubscriptions() {
+        return snsClient.listSubscriptionsByTopicPaginator(ListSubscriptionsByTopicRequest.builder()
+                        .topicArn(topicArn)
+                        .build())
+                .subscriptions()
+                .stream()
+                .filter(SubscriptionIndex::isConfirmedEmail);
+    }
+
+    // Pending subscriptions report "PendingConfirmation" instead of an ARN
+    static boolean isConfirmedEmail(Subscription subscription) {
+        return "email".equals(subscription.protocol())
+                && subscription.endpoint() != null
+                && subscription.subscriptionArn() != null
+                && subscription.subscriptionArn().startsWith("arn:");
+    }
+}
@@ -2,20 +2,19 @@ package com.epam.aws;
 
 import com.epam.aws.model.SubscriptionEntity;
 import com.epam.aws.repository.SubscriptionRepository;
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestParam;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.*;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,10 +28,14 @@ public class SubscriptionService {
 
     private final SubscriptionRepository subscriptionRepository;
 
+    private final SubscriptionIndex subscriptionIndex;
+
     @Autowired
-    public SubscriptionService(SnsClient snsClient, SubscriptionRepository subscriptionRepository) {
+    public SubscriptionService(@Lazy SnsClient snsClient, SubscriptionRepository subscriptionRepository,
+                               SubscriptionIndex subscriptionIndex) {
         this.snsClient = snsClient;
         this.subscriptionRepository = subscriptionRepository;
+        this.subscriptionIndex = subscriptionIndex;
     }
 
     public ResponseEntity<String> subscribe(@RequestParam String email, List<String> messageTypes) {
@@ -60,19 +63,18 @@ public class SubscriptionService {
 
     public ResponseEntity<String> unsubscribe(@RequestParam String email) {
         try {
-            ListSubscriptionsByTopicRequest listRequest = ListSubscriptionsByTopicRequest.builder()
-                    .topicArn(topicArn)
+            Optional<String> subscriptionArn = subscriptionIndex.findSubscriptionArn(email);
+            if (subscriptionArn.isEmpty()) {
+                // Unknown, or confirmed since the last index sync
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("No confirmed subscription was found for this address. Subscriptions confirmed in the last"
+                                + " few minutes can be removed a little later, or with the link in any notification.");
+            }
+            UnsubscribeRequest unsubscribeRequest = UnsubscribeRequest.builder()
+                    .subscriptionArn(subscriptionArn.get())
                     .build();
-
-            snsClient.listSubscriptionsByTopic(listRequest).subscriptions().stream()
-                    .filter(subscription -> subscription.endpoint().equals(email))
-                    .findFirst()
-                    .ifPresent(subscription -> {
-                        UnsubscribeRequest unsubscribeRequest = UnsubscribeRequest.builder()
-                                .subscriptionArn(subscription.subscriptionArn())
-                                .build();
-                        snsClient.unsubscribe(unsubscribeRequest);
-                    });
+            snsClient.unsubscribe(unsubscribeRequest);
+            subscriptionIndex.remove(email);
             log.info("{} unsubscribed", email);
             return ResponseEntity.ok("Unsubscription request received. You will no longer receive notifications.");
         } catch (Exception ex){
@@ -82,51 +84,9 @@ public class SubscriptionService {
         }
     }
 
-    @Scheduled(fixedRateString = "PT1M")
-    @Transactional
-    public void checkAndProcessSubscriptions() {
-        // Getting all the subscriptions waiting for filter set
-        List<SubscriptionEntity> subscriptions = subscriptionRepository.findAll();
-        if (subscriptions.isEmpty()) {return;}
-        // Getting all subscriptions of topicArn with one request
-        ListSubscriptionsByTopicRequest request = ListSubscriptionsByTopicRequest.builder()
-                .topicArn(topicArn)
-                .build();
-        ListSubscriptionsByTopicResponse response = snsClient.listSubscriptionsByTopic(request);
-
-        // Find the created subscriptionArn for the email to set the filter
-
-        Map<String, String> emailToSubscriptionArnMap = response.subscriptions().stream()
-                .filter(subscription -> subscription.subscriptionArn() != null)
-                .filter(subscription -> subscription.subscriptionArn().startsWith("arn:aws:sns:"))
-                .collect(Collectors.toMap(Subscription::endpoint, Subscription::subscriptionArn));
-
-
-        for (SubscriptionEntity entity : subscriptions) {
-            String email = entity.getEmail();
-            String subscriptionArn = emailToSubscriptionArnMap.get(email);
-            log.info("Setting the filter for {} with the subscription URL {}",
-                    email, subscriptionArn);
-
-            if (subscriptionArn != null) {
-                addFilterToSubscription(subscriptionArn, entity.getMessageTypes());
-                subscriptionRepository.delete(entity);
-            }
-        }
-    }
-
-    private void addFilterToSubscription(String subscriptionArn, List<String> messageTypes) {
-        String filterPolicy = messageTypes.stream()
+    static String filterPolicy(List<String> messageTypes) {
+        return messageTypes.stream()
                 .map(type -> "\"" + type + "\"")
                 .collect(Collectors.joining(",", "{ \"imageExtension\": [", "] }"));
-
-        SetSubscriptionAttributesRequest setSubscriptionAttributesRequest = SetSubscriptionAttributesRequest.builder()
-                .subscriptionArn(subscriptionArn)
-                .attributeName("FilterPolicy")
-                .attributeValue(filterPolicy)
-                .build();
-
-
-        snsClient.setSubscriptionAttributes(setSubscriptionAttributesRequest);
     }
 }
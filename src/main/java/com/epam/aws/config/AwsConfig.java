@@ -1,45 +1,178 @@
 package com.epam.aws.config;
 
+import com.epam.aws.AwsClientMetricPublisher;
+import com.epam.aws.InstanceIdentity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.regions.internal.util.EC2MetadataUtils;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import software.amazon.awssdk.services.s3.crt.S3CrtHttpConfiguration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
 
+import java.time.Duration;
+
 @Configuration
 public class AwsConfig {
+
+    // All synchronous clients share one connection pool, so connections idle in one client are available to another.
+    // With virtual threads the pool, not the thread count, caps concurrency
+    @Value("${aws.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${aws.http.connection-acquisition-timeout:PT10S}")
+    private Duration connectionAcquisitionTimeout;
+
+    @Value("${aws.http.connection-timeout:PT2S}")
+    private Duration connectionTimeout;
+
+    @Value("${aws.http.socket-timeout:PT30S}")
+    private Duration socketTimeout;
+
+    @Value("${aws.http.connection-max-idle-time:PT60S}")
+    private Duration connectionMaxIdleTime;
+
+    // Zero keeps connections until they are idle or the server closes them
+    @Value("${aws.http.connection-time-to-live:PT0S}")
+    private Duration connectionTimeToLive;
+
+    @Value("${aws.http.tcp-keep-alive:false}")
+    private boolean tcpKeepAlive;
+
+    @Value("${aws.http.use-idle-connection-reaper:true}")
+    private boolean useIdleConnectionReaper;
+
+    @Value("${images.upload.part-size:8388608}")
+    private long partSize;
+
+    @Value("${images.upload.multipart-threshold:16777216}")
+    private long multipartThreshold;
+
+    /**
+     * Clients given an explicit HTTP client leave closing it to the application context.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkHttpClient awsHttpClient() {
+        return ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .connectionTimeout(connectionTimeout)
+                .socketTimeout(socketTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .connectionTimeToLive(connectionTimeToLive)
+                .tcpKeepAlive(tcpKeepAlive)
+                .useIdleConnectionReaper(useIdleConnectionReaper)
+                .build();
+    }
+
     @Bean
-    public S3Client s3Client() {
+    public S3Client s3Client(SdkHttpClient awsHttpClient, InstanceIdentity instanceIdentity,
+                             AwsClientMetricPublisher metricPublisher) {
         // Using EC2 instance with DefaultCredentialsProvider
-        String region = EC2MetadataUtils.getEC2InstanceRegion();
         return S3Client.builder()
-                .region(Region.of(region))
+                .region(instanceIdentity.awsRegion())
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(metricPublisher))
                 .build();
     }
+
     @Bean
-    public SqsClient sqsClient() {
-        String region = EC2MetadataUtils.getEC2InstanceRegion();
+    public SqsClient sqsClient(SdkHttpClient awsHttpClient, InstanceIdentity instanceIdentity,
+                               AwsClientMetricPublisher metricPublisher) {
         return SqsClient.builder()
-                .region(Region.of(region))
+                .region(instanceIdentity.awsRegion())
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(metricPublisher))
                 .build();
     }
 
+    // Only needed by the subscription endpoints and the scheduled filter processing, created on first use
+    @Lazy
     @Bean
-    public SnsClient snsClient() {
-        String region = EC2MetadataUtils.getEC2InstanceRegion();
+    public SnsClient snsClient(SdkHttpClient awsHttpClient, InstanceIdentity instanceIdentity,
+                               AwsClientMetricPublisher metricPublisher) {
         return SnsClient.builder()
-                .region(Region.of(region))
+                .region(instanceIdentity.awsRegion())
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(metricPublisher))
                 .build();
     }
+
+    @Lazy
     @Bean
-    public LambdaClient lambdaClient() {
-        return LambdaClient.create();
+    public LambdaClient lambdaClient(SdkHttpClient awsHttpClient, InstanceIdentity instanceIdentity,
+                                     AwsClientMetricPublisher metricPublisher) {
+        return LambdaClient.builder()
+                .region(instanceIdentity.awsRegion())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(metricPublisher))
+                .build();
+    }
+
+    /**
+     * Non-blocking S3 client on its own Netty connection pool, used by the uploader instead of the
+     * synchronous client. Large objects are split into parts by the SDK.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "aws.s3.async-client", havingValue = "netty")
+    public S3AsyncClient nettyS3AsyncClient(InstanceIdentity instanceIdentity, AwsClientMetricPublisher metricPublisher) {
+        return S3AsyncClient.builder()
+                .region(instanceIdentity.awsRegion())
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections)
+                        .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                        .connectionTimeout(connectionTimeout)
+                        .readTimeout(socketTimeout)
+                        .writeTimeout(socketTimeout)
+                        .connectionMaxIdleTime(connectionMaxIdleTime)
+                        .connectionTimeToLive(connectionTimeToLive)
+                        .tcpKeepAlive(tcpKeepAlive)
+                        .useIdleConnectionReaper(useIdleConnectionReaper))
+                .overrideConfiguration(overrideConfiguration(metricPublisher))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(multipartThreshold)
+                        .minimumPartSizeInBytes(partSize)
+                        .build())
+                .build();
+    }
+
+    /**
+     * S3 client on the native AWS Common Runtime, which splits transfers into parts and spreads them
+     * over several connections on its own. It manages its connections itself and publishes no SDK metrics.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "aws.s3.async-client", havingValue = "crt")
+    public S3AsyncClient crtS3AsyncClient(InstanceIdentity instanceIdentity) {
+        return S3AsyncClient.crtBuilder()
+                .region(instanceIdentity.awsRegion())
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .maxConcurrency(maxConnections)
+                .minimumPartSizeInBytes(partSize)
+                .thresholdInBytes(multipartThreshold)
+                .httpConfiguration(S3CrtHttpConfiguration.builder()
+                        .connectionTimeout(connectionTimeout)
+                        .build())
+                .build();
+    }
+
+    private static ClientOverrideConfiguration overrideConfiguration(AwsClientMetricPublisher metricPublisher) {
+        return ClientOverrideConfiguration.builder()
+                .addMetricPublisher(metricPublisher)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package com.epam.aws.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executors of the application's own background work.
+ * With {@code spring.threads.virtual.enabled=true} on Java 21+, Spring Boot runs Tomcat requests, async
+ * responses and {@code @Scheduled} jobs on virtual threads, and these executors follow: the thread count
+ * becomes a concurrency limit instead of a pool size. The build, buildspec and EC2 template install Corretto 17,
+ * which has no virtual threads, so the deployed application always uses the platform thread pools below and
+ * only logs a warning when the switch is set. The virtual thread branch takes effect once the runtime is Java 21.
+ */
+@Slf4j
+@Configuration
+public class ExecutorConfig {
+
+    private final boolean virtualThreads;
+
+    public ExecutorConfig(Environment environment) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        if (virtualThreads) {
+            log.info("Running request handling, scheduled jobs and upload executors on virtual threads");
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads, using platform threads",
+                    Runtime.version().feature());
+        }
+    }
+
+    // Worker pool shared by all multipart uploads; each upload limits its own parts in flight
+    @Bean
+    public AsyncTaskExecutor s3PartUploadExecutor(@Value("${images.upload.part-upload-threads:16}") int threads) {
+        return executor("s3-part-upload-", threads, Integer.MAX_VALUE);
+    }
+
+    // Runs whole-file uploads of a batch request; kept apart from the part pool so batches cannot starve their own parts
+    @Bean
+    public AsyncTaskExecutor imageUploadExecutor(@Value("${images.upload.batch-threads:8}") int threads) {
+        return executor("image-upload-", threads, Integer.MAX_VALUE);
+    }
+
+    // Resizing is CPU bound, so renditions get a small pool with a bounded queue; a full queue rejects new work
+    @Bean
+    public AsyncTaskExecutor renditionExecutor(@Value("${images.renditions.threads:2}") int threads,
+                                               @Value("${images.renditions.queue-capacity:100}") int queueCapacity) {
+        return executor("image-rendition-", threads, queueCapacity);
+    }
+
+    // Calls to the SNS control plane (subscribe, filter policies); their rate is capped separately by a RateLimiter
+    @Bean
+    public AsyncTaskExecutor snsExecutor(@Value("${aws.sns.threads:4}") int threads) {
+        return executor("sns-", threads, Integer.MAX_VALUE);
+    }
+
+    private AsyncTaskExecutor executor(String threadNamePrefix, int threads, int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setTaskTerminationTimeout(30_000);
+            if (queueCapacity < Integer.MAX_VALUE) {
+                // A concurrency limit would make submitters wait; bounded executors must reject like a full pool
+                return new BoundedVirtualThreadExecutor(executor, threads, queueCapacity);
+            }
+            executor.setConcurrencyLimit(threads);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Virtual thread counterpart of a pool with a bounded queue: at most {@code threads} tasks run at once, up to
+     * {@code queueCapacity} more wait on their own virtual threads, and anything beyond is rejected with
+     * {@link TaskRejectedException} without blocking the caller.
+     */
+    static final class BoundedVirtualThreadExecutor implements AsyncTaskExecutor, AutoCloseable {
+
+        private final SimpleAsyncTaskExecutor delegate;
+        private final Semaphore admitted;
+        private final Semaphore running;
+
+        BoundedVirtualThreadExecutor(SimpleAsyncTaskExecutor delegate, int threads, int queueCapacity) {
+            this.delegate = delegate;
+            this.admitted = new Semaphore(threads + queueCapacity);
+            this.running = new Semaphore(threads);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!admitted.tryAcquire()) {
+                throw new TaskRejectedException("Executor is at capacity, task rejected: " + task);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        running.acquire();
+                        try {
+                            task.run();
+                        } finally {
+                            running.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        admitted.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                admitted.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
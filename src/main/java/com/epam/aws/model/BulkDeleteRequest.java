@@ -0,0 +1,19 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Selects the images to delete either by name or by name prefix; exactly one of the two must be set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteRequest {
+
+    private List<String> names;
+    private String prefix;
+}
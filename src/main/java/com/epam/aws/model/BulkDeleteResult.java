@@ -0,0 +1,27 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteResult {
+
+    private long requested;
+    private long deleted;
+    private List<Failure> failures = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+        private String key;
+        private String code;
+        private String message;
+    }
+}
@@ -0,0 +1,30 @@
+package com.epam.aws.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One stored S3 object shared by every image_metadata row with the same content hash.
+ * The object is deleted when the last referencing row goes.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "image_content")
+public class ImageContent {
+
+    // Hex encoded SHA-256 of the image bytes
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private String objectKey;
+    private long size;
+    private String eTag;
+    private int refCount;
+}
@@ -5,6 +5,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 
 import java.util.Date;
@@ -13,6 +15,15 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+// The listing pages on (last_update_date, id) or (file_size, id) when filtering by that range, so the matching
+// index is read in order without a filesort. InnoDB appends the primary key to every secondary index, so the
+// single-column indexes of older tables are read the same way and ddl-auto keeps them under these names.
+@Table(name = "image_metadata", indexes = {
+        @Index(name = "uk_image_metadata_file_name", columnList = "file_name", unique = true),
+        @Index(name = "idx_image_metadata_extension", columnList = "file_extension"),
+        @Index(name = "idx_image_metadata_last_update", columnList = "last_update_date, id"),
+        @Index(name = "idx_image_metadata_size", columnList = "file_size, id")
+})
 public class ImageMetadata {
 
     @Id
@@ -23,6 +34,15 @@ public class ImageMetadata {
     private long fileSize;
     private String fileExtension;
     private Date lastUpdateDate;
+    // ETag S3 returned for the stored object, used as the download validator
+    private String eTag;
+    // SHA-256 of the content and the S3 key it is stored under; both null for images stored under their own name
+    private String contentHash;
+    private String objectKey;
+    // Read from the file header at upload; null for rows the header backfill has not reached yet
+    private String imageFormat;
+    private Integer width;
+    private Integer height;
 
     public ImageMetadata(String fileName, long fileSize, String fileExtension, Date lastUpdateDate) {
         this.fileName = fileName;
@@ -0,0 +1,33 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Query parameters of the metadata listing. Pages are addressed by the last row of the previous page: its id, and
+ * its date or size when the page is ordered by that range filter.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageMetadataFilter {
+
+    private long afterId;
+    private int limit = 100;
+    private String extension;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+    // Inclusive bounds of file_size in bytes
+    private Long minSize;
+    private Long maxSize;
+    // Keyset cursor of pages ordered by last_update_date or file_size, returned as nextAfterDate or nextAfterSize
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime afterDate;
+    private Long afterSize;
+}
@@ -0,0 +1,36 @@
+package com.epam.aws.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Upload notification waiting to be relayed to SQS.
+ * Rows are written in the same transaction as the image metadata and deleted once SQS accepted them.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "notification_outbox", indexes = @Index(name = "idx_outbox_next_attempt", columnList = "next_attempt_at"))
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 4096)
+    private String message;
+    @Column(nullable = false)
+    private Date createdAt;
+    @Column(nullable = false)
+    private Date nextAttemptAt;
+    private int attempts;
+}
@@ -4,14 +4,18 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
 @NoArgsConstructor
+@Table(name = "subscription_entity", indexes = @Index(name = "idx_subscription_entity_next_check", columnList = "next_check_at"))
 public class SubscriptionEntity {
 
     @Id
@@ -25,6 +29,16 @@ public class SubscriptionEntity {
 
     private String messageTypes;
 
+    // When the subscription is next looked for among the confirmed ones; null means right away
+    @Getter
+    @Setter
+    private Instant nextCheckAt;
+
+    // Checks that found the subscription still pending
+    @Getter
+    @Setter
+    private int attempts;
+
     public SubscriptionEntity(String email, List<String> messageTypes) {
         this.email = email;
         this.messageTypes = String.join(",", messageTypes);
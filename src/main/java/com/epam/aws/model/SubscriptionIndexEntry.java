@@ -0,0 +1,27 @@
+package com.epam.aws.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Confirmed email subscription of the notification topic, keyed by the address.
+ * Pending subscriptions have no ARN yet and are not indexed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "subscription_index")
+public class SubscriptionIndexEntry {
+
+    @Id
+    private String email;
+
+    @Column(nullable = false)
+    private String subscriptionArn;
+}
@@ -0,0 +1,21 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One address of a bulk subscription import with the image extensions it wants to be notified about;
+ * no message types means all notifications.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionRequest {
+
+    private String email;
+    private List<String> messageTypes = new ArrayList<>();
+}
@@ -0,0 +1,23 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionResult {
+
+    private String email;
+    private boolean subscribed;
+    private String message;
+
+    public static SubscriptionResult subscribed(String email, String message) {
+        return new SubscriptionResult(email, true, message);
+    }
+
+    public static SubscriptionResult failed(String email, String message) {
+        return new SubscriptionResult(email, false, message);
+    }
+}
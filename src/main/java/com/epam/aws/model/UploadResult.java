@@ -0,0 +1,23 @@
+package com.epam.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadResult {
+
+    private String fileName;
+    private boolean uploaded;
+    private String message;
+
+    public static UploadResult uploaded(String fileName, String message) {
+        return new UploadResult(fileName, true, message);
+    }
+
+    public static UploadResult failed(String fileName, String message) {
+        return new UploadResult(fileName, false, message);
+    }
+}
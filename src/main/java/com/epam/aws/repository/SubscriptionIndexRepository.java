@@ -0,0 +1,9 @@
+package com.epam.aws.repository;
+
+import com.epam.aws.model.SubscriptionIndexEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SubscriptionIndexRepository extends JpaRepository<SubscriptionIndexEntry, String> {
+}
@@ -2,12 +2,20 @@ package com.epam.aws.repository;
 
 
 import com.epam.aws.model.SubscriptionEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
 public interface SubscriptionRepository extends JpaRepository<SubscriptionEntity, Long> {
     List<SubscriptionEntity> findByEmail(String email);
+
+    // Rows from before next_check_at existed have it unset and are due; MySQL sorts them first
+    @Query("SELECT s FROM SubscriptionEntity s WHERE s.nextCheckAt IS NULL OR s.nextCheckAt <= :now ORDER BY s.nextCheckAt, s.id")
+    List<SubscriptionEntity> findDue(@Param("now") Instant now, Pageable pageable);
 }
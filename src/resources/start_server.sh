@@ -2,6 +2,38 @@
 cd /home/ec2-user/
 source /home/ec2-user/app_env.sh
 env > /home/ec2-user/env_vars.log
-pkill -f 'java -jar /home/ec2-user/AwsDeveloperProject.jar'
+pkill -f 'AwsDeveloperProject.jar'
+# Give the previous instance time to shut down gracefully and free the port
+for _ in $(seq 30); do
+  pgrep -f 'AwsDeveloperProject.jar' > /dev/null || break
+  sleep 1
+done
 
-nohup java -jar AwsDeveloperProject.jar > app.log 2>&1 &
\ No newline at end of file
+APP_JAR=/home/ec2-user/AwsDeveloperProject.jar
+CDS_DIR=/home/ec2-user/cds
+JAVA_OPTS="${JAVA_OPTS:-}"
+
+# Jars built with gradle build -Paot carry pre-generated bean definitions
+if jar tf "$APP_JAR" | grep -q '__ApplicationContextInitializer.class'; then
+  JAVA_OPTS="$JAVA_OPTS -Dspring.aot.enabled=true"
+fi
+
+# The class data sharing archive is only valid for the jar it was recorded with, so a new
+# deployment is extracted and trained once: the training run starts the application context,
+# exits as soon as it is ready and writes the classes it loaded to the archive.
+if [ "${CDS_ENABLED:-true}" = "true" ]; then
+  if [ ! -f "$CDS_DIR/application.jsa" ] || [ "$APP_JAR" -nt "$CDS_DIR/application.jsa" ]; then
+    rm -rf "$CDS_DIR"
+    java -Djarmode=tools -jar "$APP_JAR" extract --destination "$CDS_DIR"
+    (cd "$CDS_DIR" && java $JAVA_OPTS -XX:ArchiveClassesAtExit=application.jsa -Dspring.context.exit=onRefresh \
+        -jar AwsDeveloperProject.jar > /home/ec2-user/cds-training.log 2>&1) \
+      || { echo "CDS training run failed, see cds-training.log"; rm -f "$CDS_DIR/application.jsa"; }
+  fi
+  if [ -f "$CDS_DIR/application.jsa" ]; then
+    cd "$CDS_DIR"
+    nohup java $JAVA_OPTS -XX:SharedArchiveFile=application.jsa -jar AwsDeveloperProject.jar > /home/ec2-user/app.log 2>&1 &
+    exit 0
+  fi
+fi
+
+nohup java $JAVA_OPTS -jar "$APP_JAR" > app.log 2>&1 &
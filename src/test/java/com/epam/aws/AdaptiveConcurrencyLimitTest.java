@@ -0,0 +1,99 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void testTryAcquire_RejectsAtLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 1.5, 0.2);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(FAST, true);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void testRelease_GrowsWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, 1.5, 0.2);
+
+        runSaturated(limit, FAST, 100);
+
+        assertTrue(limit.getLimit() > 10, "limit was " + limit.getLimit());
+        assertTrue(limit.getLimit() <= 100);
+    }
+
+    @Test
+    void testRelease_ShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 5, 100, 1.5, 0.2);
+        runSaturated(limit, FAST, 200);
+        int before = limit.getLimit();
+
+        runSaturated(limit, SLOW, 50);
+
+        assertTrue(limit.getLimit() < before, "limit stayed at " + limit.getLimit());
+        assertTrue(limit.getLimit() >= 5);
+    }
+
+    @Test
+    void testRelease_IgnoresSamplesWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 1.5, 0.2);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, true);
+        }
+
+        assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    void testRelease_IgnoresFailures() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 100, 1.5, 0.2);
+
+        for (int i = 0; i < 50; i++) {
+            fill(limit);
+            drain(limit, 1, false);
+        }
+
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 10, 100, 1.5, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 1, 100, 0.5, 0.2));
+    }
+
+    // Keeps every permit in use, so each sample counts
+    private static void runSaturated(AdaptiveConcurrencyLimit limit, long rtt, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            fill(limit);
+            drain(limit, rtt, true);
+        }
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // take every free permit
+        }
+    }
+
+    private static void drain(AdaptiveConcurrencyLimit limit, long rtt, boolean success) {
+        while (limit.getInFlight() > 0) {
+            limit.release(rtt, success);
+        }
+    }
+}
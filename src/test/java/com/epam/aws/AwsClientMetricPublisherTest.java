@@ -0,0 +1,73 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AwsClientMetricPublisherTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AwsClientMetricPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new AwsClientMetricPublisher(meterRegistry);
+    }
+
+    @Test
+    void testPublish_RecordsPoolMetricsOfEveryAttempt() {
+        publisher.publish(apiCall("S3", 7, 2, 50, Duration.ofMillis(40), 2));
+
+        assertEquals(2, meterRegistry.get(AwsClientMetricPublisher.ACQUIRE_TIMER).tag("service", "S3").timer().count());
+        assertEquals(80, meterRegistry.get(AwsClientMetricPublisher.ACQUIRE_TIMER).tag("service", "S3").timer()
+                .totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(7, meterRegistry.get(AwsClientMetricPublisher.LEASED_SUMMARY).tag("service", "S3").summary().max());
+        assertEquals(2, meterRegistry.get(AwsClientMetricPublisher.PENDING_SUMMARY).tag("service", "S3").summary().max());
+        assertEquals(50, meterRegistry.get(AwsClientMetricPublisher.MAX_GAUGE).tag("service", "S3").gauge().value());
+    }
+
+    @Test
+    void testPublish_TagsByService() {
+        publisher.publish(apiCall("S3", 10, 0, 50, Duration.ZERO, 1));
+        publisher.publish(apiCall("SQS", 1, 0, 50, Duration.ZERO, 1));
+        publisher.publish(apiCall("SQS", 3, 0, 50, Duration.ZERO, 1));
+
+        assertEquals(1, meterRegistry.get(AwsClientMetricPublisher.LEASED_SUMMARY).tag("service", "S3").summary().count());
+        assertEquals(2, meterRegistry.get(AwsClientMetricPublisher.LEASED_SUMMARY).tag("service", "SQS").summary().count());
+        assertEquals(4, meterRegistry.get(AwsClientMetricPublisher.LEASED_SUMMARY).tag("service", "SQS").summary().totalAmount());
+    }
+
+    @Test
+    void testPublish_IgnoresCallsWithoutHttpMetrics() {
+        MetricCollector collector = MetricCollector.create("ApiCall");
+        collector.reportMetric(CoreMetric.SERVICE_ID, "SNS");
+
+        publisher.publish(collector.collect());
+
+        assertEquals(0, meterRegistry.get(AwsClientMetricPublisher.ACQUIRE_TIMER).tag("service", "SNS").timer().count());
+    }
+
+    // Same shape as the SDK reports: call, attempts, and the HTTP client metrics below each attempt
+    private static MetricCollection apiCall(String service, int leased, int pending, int max, Duration acquire, int attempts) {
+        MetricCollector call = MetricCollector.create("ApiCall");
+        call.reportMetric(CoreMetric.SERVICE_ID, service);
+        for (int i = 0; i < attempts; i++) {
+            MetricCollector http = call.createChild("ApiCallAttempt").createChild("HttpClient");
+            http.reportMetric(HttpMetric.LEASED_CONCURRENCY, leased);
+            http.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pending);
+            http.reportMetric(HttpMetric.MAX_CONCURRENCY, max);
+            http.reportMetric(HttpMetric.CONCURRENCY_ACQUIRE_DURATION, acquire);
+        }
+        return call.collect();
+    }
+}
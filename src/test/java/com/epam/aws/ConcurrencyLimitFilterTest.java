@@ -0,0 +1,115 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimit uploadLimit;
+    private AdaptiveConcurrencyLimit downloadLimit;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        uploadLimit = new AdaptiveConcurrencyLimit(1, 1, 10, 1.5, 0.2);
+        downloadLimit = new AdaptiveConcurrencyLimit(1, 1, 10, 1.5, 0.2);
+        filter = new ConcurrencyLimitFilter(meterRegistry, true, uploadLimit, downloadLimit, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void testUploadOverLimitIsRejectedWithRetryAfter() throws Exception {
+        assertTrue(uploadLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/images/upload"), response,
+                (req, res) -> fail("request should not reach the controller"));
+
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, meterRegistry.get("images.concurrency.rejected").tag("endpoint", "upload").counter().count());
+        assertEquals(0, meterRegistry.get("images.concurrency.rejected").tag("endpoint", "download").counter().count());
+    }
+
+    @Test
+    void testLimitsAreSeparatePerEndpoint() throws Exception {
+        assertTrue(uploadLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/images/download/cat.png"), response, (req, res) -> {
+            assertEquals(1, downloadLimit.getInFlight());
+            ((HttpServletResponse) res).setStatus(200);
+        });
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, downloadLimit.getInFlight());
+    }
+
+    @Test
+    void testPermitIsReleasedWhenChainThrows() {
+        FilterChain failing = (req, res) -> {
+            throw new IllegalStateException("boom");
+        };
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(
+                new MockHttpServletRequest("POST", "/images/upload/batch"), new MockHttpServletResponse(), failing));
+
+        assertEquals(0, uploadLimit.getInFlight());
+    }
+
+    @Test
+    void testStreamedDownloadHoldsPermitUntilComplete() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/download/cat.png");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        assertEquals(1, downloadLimit.getInFlight());
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/images/download/dog.png"), second,
+                (req, res) -> fail("request should not reach the controller"));
+        assertEquals(503, second.getStatus());
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertEquals(0, downloadLimit.getInFlight());
+    }
+
+    @Test
+    void testOtherEndpointsAndDisabledFilterAreNotLimited() throws Exception {
+        assertTrue(uploadLimit.tryAcquire());
+        assertTrue(downloadLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/images/metadata/cat.png"), response,
+                (req, res) -> ((HttpServletResponse) res).setStatus(200));
+        assertEquals(200, response.getStatus());
+
+        ConcurrencyLimitFilter disabled = new ConcurrencyLimitFilter(meterRegistry, false, uploadLimit, downloadLimit,
+                Duration.ofSeconds(1));
+        MockHttpServletResponse upload = new MockHttpServletResponse();
+        disabled.doFilter(new MockHttpServletRequest("POST", "/images/upload"), upload,
+                (req, res) -> ((HttpServletResponse) res).setStatus(201));
+        assertEquals(201, upload.getStatus());
+    }
+
+    @Test
+    void testPublishesLimitAndInFlight() {
+        assertTrue(downloadLimit.tryAcquire());
+
+        assertEquals(1, meterRegistry.get("images.concurrency.limit").tag("endpoint", "download").gauge().value());
+        assertEquals(1, meterRegistry.get("images.concurrency.in-flight").tag("endpoint", "download").gauge().value());
+    }
+}
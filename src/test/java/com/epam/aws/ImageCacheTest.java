@@ -0,0 +1,104 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private ImageCache imageCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Clock clock = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+        imageCache = new ImageCache(true, directory, 10, 8, Duration.ofMinutes(1), new SimpleMeterRegistry(), clock);
+        imageCache.init();
+    }
+
+    @Test
+    void testGet_ReturnsCommittedEntry() throws IOException {
+        put("a.jpg", "abcdef");
+
+        ImageCache.CachedImage cached = imageCache.get("a.jpg");
+
+        assertNotNull(cached);
+        assertEquals("\"a.jpg\"", cached.eTag());
+        assertTrue(imageCache.isFresh(cached));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        cached.writeTo(outputStream, 2, 3);
+        assertEquals("cde", outputStream.toString());
+        assertEquals(1, imageCache.hitCount());
+    }
+
+    @Test
+    void testGet_CountsMiss() {
+        assertNull(imageCache.get("missing.jpg"));
+        assertEquals(1, imageCache.missCount());
+    }
+
+    @Test
+    void testCommit_EvictsLeastRecentlyUsedEntries() {
+        put("a.jpg", "aaaa");
+        put("b.jpg", "bbbb");
+        imageCache.get("a.jpg");
+
+        put("c.jpg", "cccc");
+
+        assertNotNull(imageCache.get("a.jpg"));
+        assertNull(imageCache.get("b.jpg"));
+        assertNotNull(imageCache.get("c.jpg"));
+        assertEquals(8, imageCache.totalBytes());
+        assertEquals(1, imageCache.evictionCount());
+    }
+
+    @Test
+    void testNewWriter_SkipsObjectsAboveEntryLimit() {
+        assertNull(imageCache.newWriter("big.jpg", "\"big\"", 9L));
+    }
+
+    @Test
+    void testInvalidate_DiscardsEntryAndActiveWriter() {
+        put("a.jpg", "aaaa");
+        ImageCache.Writer writer = imageCache.newWriter("b.jpg", "\"b\"", 4L);
+
+        imageCache.invalidate("a.jpg");
+        imageCache.invalidate("b.jpg");
+        writer.write("bbbb".getBytes(), 0, 4);
+        writer.commit();
+
+        assertNull(imageCache.get("a.jpg"));
+        assertNull(imageCache.get("b.jpg"));
+        assertEquals(0, imageCache.totalBytes());
+    }
+
+    @Test
+    void testDisabledCache_DoesNothing() {
+        ImageCache disabled = new ImageCache(false, directory, 10, 8, Duration.ofMinutes(1),
+                new SimpleMeterRegistry(), Clock.systemUTC());
+
+        assertNull(disabled.newWriter("a.jpg", "\"a\"", 4L));
+        assertNull(disabled.get("a.jpg"));
+        assertEquals(0, disabled.missCount());
+    }
+
+    private void put(String key, String content) {
+        ImageCache.Writer writer = imageCache.newWriter(key, "\"" + key + "\"", (long) content.length());
+        assertNotNull(writer);
+        writer.write(content.getBytes(), 0, content.length());
+        writer.commit();
+    }
+}
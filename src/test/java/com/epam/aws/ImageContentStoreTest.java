@@ -0,0 +1,173 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageContentStoreTest {
+
+    // SHA-256 of "abc"
+    private static final String ABC_HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private S3MultipartUploader s3MultipartUploader;
+
+    @Mock
+    private TransactionOperations transactionOperations;
+
+    @Mock
+    private ImageRenditionService renditionService;
+
+    private ImageContentStore contentStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        contentStore = new ImageContentStore(s3Client, jdbcTemplate, s3MultipartUploader, new StageMetrics(new SimpleMeterRegistry()),
+                transactionOperations, renditionService, 2);
+    }
+
+    @Test
+    void testStore_UploadsNewContentUnderItsHash() throws IOException {
+        when(jdbcTemplate.update(startsWith("UPDATE image_content"), eq(ABC_HASH))).thenReturn(0);
+        when(s3MultipartUploader.upload(any(), eq("_content/" + ABC_HASH), any(InputStream.class), eq(3L))).thenReturn("\"etag\"");
+
+        ImageContentStore.StoredContent content = contentStore.store(new MockMultipartFile("image", "a.jpg", "image/jpeg", "abc".getBytes()));
+
+        assertTrue(content.created());
+        assertEquals(ABC_HASH, content.contentHash());
+        assertEquals("_content/" + ABC_HASH, content.objectKey());
+        assertEquals("\"etag\"", content.eTag());
+        verify(jdbcTemplate).update(startsWith("INSERT INTO image_content"), eq(ABC_HASH), eq("_content/" + ABC_HASH), eq(3L), eq("\"etag\""));
+    }
+
+    @Test
+    void testStore_ReferencesExistingContentWithoutUploading() throws IOException {
+        when(jdbcTemplate.update(startsWith("UPDATE image_content"), eq(ABC_HASH))).thenReturn(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class), eq(ABC_HASH))).thenReturn("\"stored\"");
+
+        ImageContentStore.StoredContent content = contentStore.store(new MockMultipartFile("image", "b.jpg", "image/jpeg", "abc".getBytes()));
+
+        assertFalse(content.created());
+        assertEquals("\"stored\"", content.eTag());
+        verifyNoInteractions(s3MultipartUploader);
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(Object[].class));
+    }
+
+    @Test
+    void testRelease_ReturnsObjectsWithoutReferencesWithoutDeletingThem() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT object_key"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("_content/abc"));
+
+        List<String> unreferenced = contentStore.release(List.of("abc", "abc", "def"));
+
+        assertEquals(List.of("_content/abc"), unreferenced);
+        // One decrement per hash, by the number of references dropped
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE image_content SET ref_count = ref_count - ?"),
+                argThat((List<Object[]> rows) -> rows.size() == 2
+                        && Long.valueOf(2).equals(rows.get(0)[0]) && "abc".equals(rows.get(0)[1])
+                        && Long.valueOf(1).equals(rows.get(1)[0]) && "def".equals(rows.get(1)[1])));
+        // S3 is only touched once the caller's transaction has committed
+        verifyNoInteractions(s3Client);
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+    }
+
+    @Test
+    void testRelease_NothingToDo() {
+        assertTrue(contentStore.release(List.of()).isEmpty());
+        verifyNoInteractions(jdbcTemplate, s3Client);
+    }
+
+    @Test
+    void testDeleteUnreferenced_DeletesLockedRowsWithTheirObjects() {
+        when(jdbcTemplate.queryForList(endsWith("FOR UPDATE"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("_content/abc"));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        List<String> deleted = contentStore.deleteUnreferenced(List.of("_content/abc", "_content/def"));
+
+        assertEquals(List.of("_content/abc"), deleted);
+        verify(s3Client).deleteObjects(argThat((DeleteObjectsRequest request) ->
+                request.delete().objects().size() == 1 && request.delete().objects().get(0).key().equals("_content/abc")));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM image_content"), eq("_content/abc"));
+        verify(renditionService).deleteRenditions(List.of("_content/abc"));
+    }
+
+    @Test
+    void testDeleteUnreferenced_ContentReferencedAgainIsKept() {
+        when(jdbcTemplate.queryForList(endsWith("FOR UPDATE"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertTrue(contentStore.deleteUnreferenced(List.of("_content/abc")).isEmpty());
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testDeleteUnreferenced_KeepsRowWhenObjectCouldNotBeDeleted() {
+        when(jdbcTemplate.queryForList(endsWith("FOR UPDATE"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("_content/abc"));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("_content/abc").code("AccessDenied").build())
+                .build());
+
+        assertTrue(contentStore.deleteUnreferenced(List.of("_content/abc")).isEmpty());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+    }
+
+    @Test
+    void testDeleteUnreferenced_FailureIsLeftToTheReaper() {
+        when(jdbcTemplate.queryForList(endsWith("FOR UPDATE"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("_content/abc"));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenThrow(SdkClientException.create("S3 is down"));
+
+        assertTrue(contentStore.deleteUnreferenced(List.of("_content/abc")).isEmpty());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+    }
+
+    @Test
+    void testReapUnreferenced_DeletesBatchesUntilNoneAreLeft() {
+        when(jdbcTemplate.queryForList(contains("SKIP LOCKED"), eq(String.class), eq(2)))
+                .thenReturn(List.of("_content/a", "_content/b"), List.of("_content/c"));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        contentStore.reapUnreferenced();
+
+        verify(s3Client, times(2)).deleteObjects(any(DeleteObjectsRequest.class));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM image_content"), eq("_content/a"), eq("_content/b"));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM image_content"), eq("_content/c"));
+        verify(renditionService).deleteRenditions(List.of("_content/c"));
+    }
+
+    @Test
+    void testHash() throws IOException {
+        assertEquals(ABC_HASH, ImageContentStore.hash(new ByteArrayInputStream("abc".getBytes())));
+    }
+}
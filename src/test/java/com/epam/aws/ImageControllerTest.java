@@ -1,17 +1,23 @@
 package com.epam.aws;
 
+import com.epam.aws.model.BulkDeleteRequest;
+import com.epam.aws.model.BulkDeleteResult;
 import com.epam.aws.model.ImageMetadata;
+import com.epam.aws.model.ImageMetadataFilter;
+import com.epam.aws.model.UploadResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -21,6 +27,9 @@ class ImageControllerTest {
     @Mock
     private ImageService imageService;
 
+    @Mock
+    private ImageMetadataListingService imageMetadataListingService;
+
     @InjectMocks
     private ImageController imageController;
 
@@ -40,21 +49,55 @@ class ImageControllerTest {
         assertEquals("File uploaded successfully: test.jpg", response.getBody());
     }
 
+    @Test
+    void testUploadImages() {
+        List<MultipartFile> files = List.of(new MockMultipartFile("images", "test.jpg", "image/jpeg", "content".getBytes()));
+        List<UploadResult> results = List.of(UploadResult.uploaded("test.jpg", "File uploaded successfully"));
+        when(imageService.uploadImages(files)).thenReturn(new ResponseEntity<>(results, HttpStatus.OK));
+
+        ResponseEntity<List<UploadResult>> response = imageController.uploadImages(files);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
     @Test
     void testDownloadImage() {
-        when(imageService.downloadImage(anyString())).thenReturn(new ResponseEntity<>(HttpStatus.OK));
+        when(imageService.downloadImage(anyString(), any(HttpHeaders.class))).thenReturn(new ResponseEntity<>(HttpStatus.OK));
 
-        ResponseEntity<?> response = imageController.downloadImage("test.jpg");
+        ResponseEntity<?> response = imageController.downloadImage("test.jpg", new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
+    @Test
+    void testDownloadRendition() {
+        HttpHeaders headers = new HttpHeaders();
+        when(imageService.downloadRendition("test.jpg", 256, headers)).thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        ResponseEntity<?> response = imageController.downloadRendition("test.jpg", 256, headers);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(imageService, never()).downloadImage(anyString(), any(HttpHeaders.class));
+    }
+
+    @Test
+    void testListImageMetadata() {
+        ImageMetadataFilter filter = new ImageMetadataFilter();
+        when(imageMetadataListingService.listImageMetadata(filter)).thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        ResponseEntity<?> response = imageController.listImageMetadata(filter);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(imageMetadataListingService).listImageMetadata(filter);
+    }
+
     @Test
     void testGetImageMetadata() {
         ImageMetadata metadata = new ImageMetadata("test.jpg", 12345L, "image/jpeg", new Date());
-        when(imageService.getImageMetadata(anyString())).thenReturn(new ResponseEntity<>(metadata, HttpStatus.OK));
+        when(imageService.getImageMetadata(anyString(), any(HttpHeaders.class))).thenReturn(new ResponseEntity<>(metadata, HttpStatus.OK));
 
-        ResponseEntity<ImageMetadata> response = imageController.getImageMetadata("test.jpg");
+        ResponseEntity<ImageMetadata> response = imageController.getImageMetadata("test.jpg", new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(metadata, response.getBody());
@@ -71,6 +114,17 @@ class ImageControllerTest {
         assertEquals(metadata, response.getBody());
     }
 
+    @Test
+    void testGetRandomImagesMetadata() {
+        List<ImageMetadata> metadata = List.of(new ImageMetadata("random.jpg", 54321L, "image/png", new Date()));
+        when(imageService.getRandomImagesMetadata(3)).thenReturn(new ResponseEntity<>(metadata, HttpStatus.OK));
+
+        ResponseEntity<List<ImageMetadata>> response = imageController.getRandomImagesMetadata(3);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(metadata, response.getBody());
+    }
+
     @Test
     void testDeleteImage() {
         when(imageService.deleteImage(anyString())).thenReturn(new ResponseEntity<>("File deleted successfully", HttpStatus.OK));
@@ -80,4 +134,16 @@ class ImageControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("File deleted successfully", response.getBody());
     }
+
+    @Test
+    void testDeleteImages() {
+        BulkDeleteRequest request = new BulkDeleteRequest(List.of("test.jpg"), null);
+        BulkDeleteResult result = new BulkDeleteResult(1, 1, List.of());
+        when(imageService.deleteImages(request)).thenReturn(new ResponseEntity<>(result, HttpStatus.OK));
+
+        ResponseEntity<BulkDeleteResult> response = imageController.deleteImages(request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageHeaderBackfillTest {
+
+    // GIF header of a 2x3 image
+    private static final byte[] GIF_HEADER = {'G', 'I', 'F', '8', '9', 'a', 2, 0, 3, 0};
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionOperations transactionOperations;
+
+    @Mock
+    private ImageMetadataCache metadataCache;
+
+    private ImageHeaderBackfill backfill;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        backfill = new ImageHeaderBackfill(s3Client, jdbcTemplate, transactionOperations, metadataCache, 2, 3);
+    }
+
+    @Test
+    void testBackfill_FillsRowsFromRangedReads() {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), eq(2))).thenReturn(List.of(
+                new ImageHeaderBackfill.PendingImage(1, "a.gif", "_content/abc"),
+                new ImageHeaderBackfill.PendingImage(4, "b.txt", "b.txt")), List.of(
+                new ImageHeaderBackfill.PendingImage(7, "gone.png", "gone.png")));
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0, GetObjectRequest.class).key();
+            if (key.equals("gone.png")) {
+                throw NoSuchKeyException.builder().build();
+            }
+            byte[] header = key.equals("_content/abc") ? GIF_HEADER : "text".getBytes();
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), header);
+        });
+
+        backfill.backfill();
+
+        verify(s3Client).getObjectAsBytes(argThat((GetObjectRequest request) -> "bytes=0-65535".equals(request.range())
+                && request.key().equals("_content/abc")));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 2
+                && List.of("gif", 2, 3, 1L).equals(List.of(rows.get(0)))
+                && ImageHeaderBackfill.UNKNOWN_FORMAT.equals(rows.get(1)[0]) && rows.get(1)[1] == null));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 1
+                && ImageHeaderBackfill.UNKNOWN_FORMAT.equals(rows.get(0)[0])));
+        verify(metadataCache).invalidate("a.gif");
+        verify(metadataCache).invalidate("gone.png");
+        // The short second batch ends the run
+        verify(transactionOperations, times(2)).execute(any());
+    }
+
+    @Test
+    void testBackfill_StopsAfterMaxBatchesPerRun() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(2))).thenReturn(List.of(
+                new ImageHeaderBackfill.PendingImage(1, "a.txt", "a.txt"),
+                new ImageHeaderBackfill.PendingImage(2, "b.txt", "b.txt")));
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(
+                ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), "text".getBytes()));
+
+        backfill.backfill();
+
+        verify(transactionOperations, times(3)).execute(any());
+        verify(s3Client, times(6)).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void testBackfill_StopsWhenNothingIsPending() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(2))).thenReturn(List.of());
+
+        backfill.backfill();
+
+        verifyNoInteractions(s3Client, metadataCache);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
@@ -0,0 +1,102 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageHeaderInspectorTest {
+
+    @Test
+    void testInspect_EncodedImages() throws IOException {
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("png", 640, 480)), inspect(encode(640, 480, "png")));
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("jpeg", 300, 200)), inspect(encode(300, 200, "jpeg")));
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("gif", 17, 33)), inspect(encode(17, 33, "gif")));
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("bmp", 21, 9)), inspect(encode(21, 9, "bmp")));
+    }
+
+    @Test
+    void testInspect_ReadsOnlyTheHeader() throws IOException {
+        byte[] image = Arrays.copyOf(encode(64, 64, "png"), 2 * ImageHeaderInspector.MAX_HEADER_BYTES);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(image);
+
+        assertEquals("png", ImageHeaderInspector.inspect((InputStream) inputStream).orElseThrow().format());
+        assertEquals(ImageHeaderInspector.MAX_HEADER_BYTES, inputStream.available());
+    }
+
+    @Test
+    void testInspect_WebP() {
+        byte[] extended = webp("VP8X");
+        // Canvas of 1000x700, stored minus one
+        extended[24] = (byte) 0xE7;
+        extended[25] = 0x03;
+        extended[27] = (byte) 0xBB;
+        extended[28] = 0x02;
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("webp", 1000, 700)), ImageHeaderInspector.inspect(extended));
+
+        byte[] lossless = webp("VP8L");
+        lossless[20] = 0x2F;
+        // 14 bits of width minus one, then 14 bits of height minus one: 100x50
+        int bits = 99 | 49 << 14;
+        lossless[21] = (byte) bits;
+        lossless[22] = (byte) (bits >> 8);
+        lossless[23] = (byte) (bits >> 16);
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("webp", 100, 50)), ImageHeaderInspector.inspect(lossless));
+
+        byte[] lossy = webp("VP8 ");
+        lossy[23] = (byte) 0x9D;
+        lossy[24] = 0x01;
+        lossy[25] = 0x2A;
+        lossy[26] = (byte) 0x80;
+        lossy[27] = 0x02;
+        lossy[28] = (byte) 0xE0;
+        lossy[29] = 0x01;
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("webp", 640, 480)), ImageHeaderInspector.inspect(lossy));
+    }
+
+    @Test
+    void testInspect_JpegFrameBeyondHeaderKeepsFormat() throws IOException {
+        byte[] jpeg = encode(8, 8, "jpeg");
+
+        Optional<ImageHeaderInspector.ImageHeader> header = ImageHeaderInspector.inspect(Arrays.copyOf(jpeg, 4));
+
+        assertEquals(Optional.of(new ImageHeaderInspector.ImageHeader("jpeg", null, null)), header);
+    }
+
+    @Test
+    void testInspect_RejectsOtherContent() {
+        assertTrue(ImageHeaderInspector.inspect(new byte[0]).isEmpty());
+        assertTrue(ImageHeaderInspector.inspect("<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes()).isEmpty());
+        assertTrue(ImageHeaderInspector.inspect("%PDF-1.7".getBytes()).isEmpty());
+        // Truncated PNG without its IHDR chunk
+        assertTrue(ImageHeaderInspector.inspect(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}).isEmpty());
+        // A RIFF container that is not WebP
+        assertTrue(ImageHeaderInspector.inspect(Arrays.copyOf("RIFF\0\0\0\0WAVEfmt ".getBytes(), 40)).isEmpty());
+    }
+
+    private static Optional<ImageHeaderInspector.ImageHeader> inspect(byte[] image) throws IOException {
+        return ImageHeaderInspector.inspect(new ByteArrayInputStream(image));
+    }
+
+    private static byte[] webp(String chunk) {
+        byte[] header = new byte[32];
+        System.arraycopy("RIFF".getBytes(), 0, header, 0, 4);
+        System.arraycopy("WEBP".getBytes(), 0, header, 8, 4);
+        System.arraycopy(chunk.getBytes(), 0, header, 12, 4);
+        return header;
+    }
+
+    private static byte[] encode(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,131 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageMetadataCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ImageMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+        cache = new ImageMetadataCache(true, 2, Duration.ofMinutes(5), Duration.ofSeconds(10),
+                new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void testGet_LoadsOnceWithinTtl() {
+        cache.get("a.jpg", this::load);
+        Optional<ImageMetadata> cached = cache.get("a.jpg", this::load);
+
+        assertTrue(cached.isPresent());
+        assertEquals(1, loads.get());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void testGet_ReloadsAfterTtl() {
+        cache.get("a.jpg", this::load);
+        now.addAndGet(Duration.ofMinutes(5).toMillis());
+
+        cache.get("a.jpg", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGet_CachesNotFoundForShorterTime() {
+        cache.get("missing.jpg", this::loadNothing);
+        cache.get("missing.jpg", this::loadNothing);
+        assertEquals(1, loads.get());
+
+        now.addAndGet(Duration.ofSeconds(10).toMillis());
+        cache.get("missing.jpg", this::loadNothing);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGet_EvictsLeastRecentlyUsed() {
+        cache.get("a.jpg", this::load);
+        cache.get("b.jpg", this::load);
+        cache.get("a.jpg", this::load);
+        cache.get("c.jpg", this::load);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        cache.get("a.jpg", this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testInvalidate_DuringLoadDiscardsStaleResult() {
+        cache.get("a.jpg", name -> {
+            cache.invalidate(name);
+            return load(name);
+        });
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidate_ForcesReload() {
+        cache.get("a.jpg", this::load);
+        cache.invalidate("a.jpg");
+
+        cache.get("a.jpg", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testPut_WarmsEntry() {
+        cache.put(new ImageMetadata("warm.jpg", 1L, "jpg", new Date()));
+
+        assertTrue(cache.get("warm.jpg", this::load).isPresent());
+        assertEquals(0, loads.get());
+    }
+
+    private Optional<ImageMetadata> load(String name) {
+        loads.incrementAndGet();
+        return Optional.of(new ImageMetadata(name, 1L, "jpg", new Date()));
+    }
+
+    private Optional<ImageMetadata> loadNothing(String name) {
+        loads.incrementAndGet();
+        return Optional.empty();
+    }
+}
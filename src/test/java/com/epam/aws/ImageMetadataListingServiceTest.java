@@ -0,0 +1,188 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadataFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageMetadataListingServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImageMetadataListingService listingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        listingService = new ImageMetadataListingService(jdbcTemplate, objectMapper, 50);
+    }
+
+    @Test
+    void testListImageMetadata_StreamsRowsAndNextCursor() throws Exception {
+        givenRows(2);
+
+        JsonNode page = objectMapper.readTree(stream(new ImageMetadataFilter(0, 2, null, null, null, null, null, null, null)));
+
+        assertEquals(2, page.get("items").size());
+        assertEquals("image1.jpg", page.get("items").get(0).get("fileName").asText());
+        assertEquals(2, page.get("nextAfterId").asLong());
+    }
+
+    @Test
+    void testListImageMetadata_LastPageHasNoCursor() throws Exception {
+        givenRows(1);
+
+        JsonNode page = objectMapper.readTree(stream(new ImageMetadataFilter(0, 10, null, null, null, null, null, null, null)));
+
+        assertEquals(1, page.get("items").size());
+        assertTrue(page.get("nextAfterId").isNull());
+    }
+
+    @Test
+    void testListImageMetadata_RejectsInvalidLimit() {
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(0, 0, null, null, null, null, null, null, null)).getStatusCode().value());
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(0, 5000, null, null, null, null, null, null, null)).getStatusCode().value());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testListImageMetadata_RejectsInvalidSizeRange() {
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(0, 10, null, null, null, -1L, null, null, null)).getStatusCode().value());
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(0, 10, null, null, null, 2048L, 1024L, null, null)).getStatusCode().value());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testListImageMetadata_RejectsCursorOfAnotherOrder() {
+        LocalDateTime date = LocalDateTime.of(2024, 1, 1, 0, 0);
+        // Pages without a date filter are not ordered by date
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(5, 10, null, null, null, 1024L, null, date, null)).getStatusCode().value());
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(5, 10, null, date, null, null, null, null, 1024L)).getStatusCode().value());
+        // A next page ordered by date needs the date of the last row
+        assertEquals(400, listingService.listImageMetadata(new ImageMetadataFilter(5, 10, null, date, null, null, null, null, null)).getStatusCode().value());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testListImageMetadata_ReturnsDateCursor_WhenFilteredByDate() throws Exception {
+        givenRows(2);
+
+        JsonNode page = objectMapper.readTree(stream(new ImageMetadataFilter(0, 2, null, LocalDateTime.of(1970, 1, 1, 0, 0), null, null, null, null, null)));
+
+        assertEquals(2, page.get("nextAfterId").asLong());
+        assertEquals(new Timestamp(0).toLocalDateTime(), LocalDateTime.parse(page.get("nextAfterDate").asText()));
+        assertFalse(page.has("nextAfterSize"));
+    }
+
+    @Test
+    void testListImageMetadata_ReturnsSizeCursor_WhenFilteredBySize() throws Exception {
+        givenRows(1);
+
+        JsonNode page = objectMapper.readTree(stream(new ImageMetadataFilter(0, 1, null, null, null, 50L, null, null, null)));
+
+        assertEquals(100, page.get("nextAfterSize").asLong());
+        assertFalse(page.has("nextAfterDate"));
+    }
+
+    @Test
+    void testBuildQuery_UsesIdKeysetAndFetchSize() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+
+        listingService.buildQuery(new ImageMetadataFilter(42, 10, "png", null, null, null, null, null, null)).createPreparedStatement(connection);
+
+        verify(connection).prepareStatement("SELECT * FROM image_metadata WHERE id > ? AND file_extension = ? ORDER BY id LIMIT ?");
+        verify(ps).setFetchSize(50);
+        verify(ps).setObject(1, 42L);
+        verify(ps).setObject(2, "png");
+        verify(ps).setObject(3, 10);
+    }
+
+    @Test
+    void testBuildQuery_PagesOnDateIndex_WhenFilteredByDate() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime afterDate = LocalDateTime.of(2024, 3, 1, 12, 30);
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+
+        listingService.buildQuery(new ImageMetadataFilter(42, 10, "png", from, null, 1024L, null, afterDate, null)).createPreparedStatement(connection);
+
+        verify(connection).prepareStatement("SELECT * FROM image_metadata"
+                + " WHERE last_update_date >= ? AND (last_update_date > ? OR id > ?) AND file_extension = ?"
+                + " AND last_update_date >= ? AND file_size >= ? ORDER BY last_update_date, id LIMIT ?");
+        verify(ps).setObject(1, Timestamp.valueOf(afterDate));
+        verify(ps).setObject(2, Timestamp.valueOf(afterDate));
+        verify(ps).setObject(3, 42L);
+        verify(ps).setObject(4, "png");
+        verify(ps).setObject(5, Timestamp.valueOf(from));
+        verify(ps).setObject(6, 1024L);
+        verify(ps).setObject(7, 10);
+    }
+
+    @Test
+    void testBuildQuery_PagesOnSizeIndex_WhenFilteredOnlyBySize() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+
+        listingService.buildQuery(new ImageMetadataFilter(0, 10, null, null, null, 1024L, 4096L, null, null)).createPreparedStatement(connection);
+        listingService.buildQuery(new ImageMetadataFilter(7, 10, null, null, null, 1024L, 4096L, null, 2048L)).createPreparedStatement(connection);
+
+        verify(connection).prepareStatement("SELECT * FROM image_metadata WHERE file_size >= ? AND file_size <= ?"
+                + " ORDER BY file_size, id LIMIT ?");
+        verify(connection).prepareStatement("SELECT * FROM image_metadata WHERE file_size >= ? AND (file_size > ? OR id > ?)"
+                + " AND file_size >= ? AND file_size <= ? ORDER BY file_size, id LIMIT ?");
+        verify(ps).setObject(1, 2048L);
+        verify(ps).setObject(2, 2048L);
+        verify(ps).setObject(3, 7L);
+    }
+
+    private String stream(ImageMetadataFilter filter) throws Exception {
+        ResponseEntity<StreamingResponseBody> response = listingService.listImageMetadata(filter);
+        assertEquals(200, response.getStatusCode().value());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Objects.requireNonNull(response.getBody()).writeTo(outputStream);
+        return outputStream.toString();
+    }
+
+    private void givenRows(int count) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 1; i <= count; i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("id")).thenReturn((long) i);
+                when(rs.getString("file_name")).thenReturn("image" + i + ".jpg");
+                when(rs.getLong("file_size")).thenReturn(100L);
+                when(rs.getString("file_extension")).thenReturn("jpg");
+                when(rs.getTimestamp("last_update_date")).thenReturn(new Timestamp(0));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,102 @@
+package com.epam.aws;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageMetadataMigrationTest {
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionOperations transactionOperations;
+
+    @Mock
+    private ImageContentStore contentStore;
+
+    private ImageMetadataMigration migration;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        migration = new ImageMetadataMigration(entityManagerFactory, jdbcTemplate, transactionOperations, contentStore);
+    }
+
+    @Test
+    void migrate_ShouldDoNothing_WhenUniqueIndexExists() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(1);
+
+        migration.afterSingletonsInstantiated();
+
+        verify(entityManagerFactory).getMetamodel();
+        verify(jdbcTemplate, never()).execute(anyString());
+        verifyNoInteractions(contentStore);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrate_ShouldKeepNewestRowPerNameAndCreateIndex() throws SQLException {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0, 1);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("cat.jpg"));
+        List<Object[]> rows = List.of(
+                new Object[]{1L, "cat.jpg", null},
+                new Object[]{2L, "cat.jpg", "hash-a"},
+                new Object[]{3L, "cat.jpg", "hash-b"});
+        when(jdbcTemplate.query(contains("FOR UPDATE"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    List<Object> mapped = new ArrayList<>();
+                    for (Object[] row : rows) {
+                        ResultSet resultSet = mock(ResultSet.class);
+                        when(resultSet.getLong("id")).thenReturn((Long) row[0]);
+                        when(resultSet.getString("file_name")).thenReturn((String) row[1]);
+                        when(resultSet.getString("content_hash")).thenReturn((String) row[2]);
+                        mapped.add(mapper.mapRow(resultSet, mapped.size()));
+                    }
+                    return mapped;
+                });
+        when(contentStore.release(anyCollection())).thenReturn(List.of("_content/hash-a"));
+
+        migration.migrate();
+
+        ArgumentCaptor<List<Object[]>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("DELETE FROM image_metadata WHERE id = ?"), deleted.capture());
+        assertEquals(List.of(1L, 2L), deleted.getValue().stream().map(row -> row[0]).toList());
+        verify(contentStore).release(List.of("hash-a"));
+        verify(contentStore).deleteUnreferenced(List.of("_content/hash-a"));
+        verify(jdbcTemplate).execute("CREATE UNIQUE INDEX uk_image_metadata_file_name ON image_metadata (file_name)");
+    }
+
+    @Test
+    void migrate_ShouldFailFast_WhenIndexCannotBeCreated() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of());
+        doThrow(new DataIntegrityViolationException("Duplicate entry")).when(jdbcTemplate).execute(anyString());
+
+        assertThrows(IllegalStateException.class, () -> migration.migrate());
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+}
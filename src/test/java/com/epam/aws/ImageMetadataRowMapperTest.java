@@ -35,6 +35,12 @@ class ImageMetadataRowMapperTest {
         when(rs.getLong("file_size")).thenReturn(fileSize);
         when(rs.getString("file_extension")).thenReturn(fileExtension);
         when(rs.getTimestamp("last_update_date")).thenReturn(new Timestamp(lastUpdateDate.getTime()));
+        when(rs.getString("e_tag")).thenReturn("\"etag\"");
+        when(rs.getString("content_hash")).thenReturn("abc123");
+        when(rs.getString("object_key")).thenReturn("_content/abc123");
+        when(rs.getString("image_format")).thenReturn("jpeg");
+        when(rs.getObject("width", Integer.class)).thenReturn(640);
+        when(rs.getObject("height", Integer.class)).thenReturn(480);
 
         // Call mapRow
         ImageMetadata metadata = rowMapper.mapRow(rs, 1);
@@ -45,6 +51,12 @@ class ImageMetadataRowMapperTest {
         assertEquals(fileSize, metadata.getFileSize());
         assertEquals(fileExtension, metadata.getFileExtension());
         assertEquals(lastUpdateDate, metadata.getLastUpdateDate());
+        assertEquals("\"etag\"", metadata.getETag());
+        assertEquals("abc123", metadata.getContentHash());
+        assertEquals("_content/abc123", metadata.getObjectKey());
+        assertEquals("jpeg", metadata.getImageFormat());
+        assertEquals(640, metadata.getWidth());
+        assertEquals(480, metadata.getHeight());
 
         // Verify interactions with the ResultSet
         verify(rs, times(1)).getLong("id");
@@ -52,5 +64,6 @@ class ImageMetadataRowMapperTest {
         verify(rs, times(1)).getLong("file_size");
         verify(rs, times(1)).getString("file_extension");
         verify(rs, times(1)).getTimestamp("last_update_date");
+        verify(rs, times(1)).getString("e_tag");
     }
 }
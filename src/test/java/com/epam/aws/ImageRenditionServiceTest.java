@@ -0,0 +1,215 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageRenditionServiceTest {
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private Executor renditionExecutor;
+
+    private ImageRenditionService renditionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(renditionExecutor).execute(any(Runnable.class));
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"rendition\"").build());
+        renditionService = new ImageRenditionService(s3Client, renditionExecutor, List.of(128, 256), List.of(256), 50_000_000);
+    }
+
+    @Test
+    void testDownloadRendition_GeneratesAndStoresMissingRendition() throws IOException {
+        givenObjects(Map.of("cat.png", png(800, 600)));
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 256, new HttpHeaders());
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        assertEquals("\"rendition\"", response.getHeaders().getETag());
+        BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(body(response)));
+        assertEquals(256, rendition.getWidth());
+        assertEquals(192, rendition.getHeight());
+        verify(s3Client).putObject(argThat((PutObjectRequest request) ->
+                request.key().equals("_renditions/256/cat.png") && request.contentType().equals("image/png")), any(RequestBody.class));
+    }
+
+    @Test
+    void testDownloadRendition_ServesStoredRenditionWithoutRendering() throws IOException {
+        givenObjects(Map.of("_renditions/256/cat.png", "stored".getBytes()));
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 256, new HttpHeaders());
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("stored", new String(body(response)));
+        // Re-uploading the name changes the rendition behind the URL, so caches must revalidate
+        assertEquals("no-cache", response.getHeaders().getCacheControl());
+        assertEquals("\"etag-_renditions/256/cat.png\"", response.getHeaders().getETag());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verifyNoInteractions(renditionExecutor);
+    }
+
+    @Test
+    void testDownloadRendition_ReturnsNotModifiedForMatchingETag() {
+        givenObjects(Map.of("_renditions/256/cat.png", "stored".getBytes()));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"etag-_renditions/256/cat.png\"");
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 256, headers);
+
+        assertEquals(304, response.getStatusCode().value());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void testDownloadRendition_RejectsWidthsThatAreNotConfigured() {
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 300, new HttpHeaders());
+
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testDownloadRendition_NotFoundWhenOriginalIsMissing() {
+        givenObjects(Map.of());
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 256, new HttpHeaders());
+
+        assertEquals(404, response.getStatusCode().value());
+    }
+
+    @Test
+    void testDownloadRendition_UnprocessableWhenOriginalIsNotAnImage() {
+        givenObjects(Map.of("notes.png", "not an image".getBytes()));
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("notes.png", 256, new HttpHeaders());
+
+        assertEquals(422, response.getStatusCode().value());
+    }
+
+    @Test
+    void testDownloadRendition_ServiceUnavailableWhenPoolIsFull() {
+        givenObjects(Map.of("cat.png", "unused".getBytes()));
+        doThrow(new TaskRejectedException("full")).when(renditionExecutor).execute(any(Runnable.class));
+
+        ResponseEntity<StreamingResponseBody> response = renditionService.downloadRendition("cat.png", 256, new HttpHeaders());
+
+        assertEquals(503, response.getStatusCode().value());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testPregenerate_RendersConfiguredWidths() throws IOException {
+        givenObjects(Map.of("_content/abc", jpeg(1024, 512)));
+
+        renditionService.pregenerate("_content/abc");
+
+        verify(s3Client).putObject(argThat((PutObjectRequest request) ->
+                request.key().equals("_renditions/256/_content/abc") && request.contentType().equals("image/jpeg")), any(RequestBody.class));
+        verify(s3Client, never()).putObject(argThat((PutObjectRequest request) -> request.key().startsWith("_renditions/128/")),
+                any(RequestBody.class));
+    }
+
+    @Test
+    void testDeleteRenditions_DeletesEveryWidthInOneRequest() {
+        renditionService.deleteRenditions(List.of("a.jpg", "b.jpg"));
+
+        verify(s3Client).deleteObjects(argThat((DeleteObjectsRequest request) -> request.delete().objects().stream()
+                .map(ObjectIdentifier::key)
+                .toList()
+                .containsAll(List.of("_renditions/128/a.jpg", "_renditions/256/a.jpg", "_renditions/128/b.jpg", "_renditions/256/b.jpg"))
+                && request.delete().objects().size() == 4));
+    }
+
+    @Test
+    void testResize_KeepsAspectRatioAndNeverEnlarges() {
+        BufferedImage resized = ImageRenditionService.resize(new BufferedImage(1000, 250, BufferedImage.TYPE_INT_ARGB), 128, false);
+        assertEquals(128, resized.getWidth());
+        assertEquals(32, resized.getHeight());
+
+        BufferedImage small = ImageRenditionService.resize(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), 512, true);
+        assertEquals(100, small.getWidth());
+        assertEquals(50, small.getHeight());
+    }
+
+    @Test
+    void testOutputFormat_FollowsDecodedFormat() {
+        assertEquals("jpeg", ImageRenditionService.outputFormat("JPEG"));
+        assertEquals("jpeg", ImageRenditionService.outputFormat("jpg"));
+        assertEquals("png", ImageRenditionService.outputFormat("gif"));
+        assertEquals("png", ImageRenditionService.outputFormat("png"));
+    }
+
+    // Every key present in the map is returned with ETag "etag-<key>", the rest are missing
+    private void givenObjects(Map<String, byte[]> objects) {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            String key = invocation.<GetObjectRequest>getArgument(0).key();
+            byte[] content = objects.get(key);
+            if (content == null) {
+                throw NoSuchKeyException.builder().message("missing " + key).build();
+            }
+            return new ResponseInputStream<>(GetObjectResponse.builder()
+                    .eTag("\"etag-" + key + "\"")
+                    .contentLength((long) content.length)
+                    .build(), new ByteArrayInputStream(content));
+        });
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        return encode(width, height, "png");
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        return encode(width, height, "jpeg");
+    }
+
+    private static byte[] encode(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Objects.requireNonNull(response.getBody()).writeTo(out);
+        return out.toByteArray();
+    }
+}
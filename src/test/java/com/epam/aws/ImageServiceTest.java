@@ -1,36 +1,73 @@
 package com.epam.aws;
 
+import com.epam.aws.model.BulkDeleteRequest;
+import com.epam.aws.model.BulkDeleteResult;
 import com.epam.aws.model.ImageMetadata;
+import com.epam.aws.model.UploadResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.mockito.Spy;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.sql.ResultSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class ImageServiceTest {
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // PNG signature and IHDR chunk of a 640x480 image
+    private static final byte[] PNG_HEADER = {
+            (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A,
+            0, 0, 0, 13, 'I', 'H', 'D', 'R',
+            0, 0, 0x02, (byte) 0x80, 0, 0, 0x01, (byte) 0xE0,
+            8, 2, 0, 0, 0};
+
     @Mock
     private S3Client s3Client;
 
@@ -44,11 +81,43 @@ class ImageServiceTest {
     private ImageService imageService;
 
     @Mock
-    private SqsProcessor sqsProcessor;
+    private NotificationOutbox notificationOutbox;
+
+    @Mock
+    private TransactionOperations transactionOperations;
+
+    @Mock
+    private ImageContentStore contentStore;
+
+    @Mock
+    private ImageCache imageCache;
+
+    @Mock
+    private Executor uploadExecutor;
+
+    @Mock
+    private ImageMetadataCache metadataCache;
+
+    @Mock
+    private RandomImageSelector randomImageSelector;
+
+    @Mock
+    private ImageRenditionService renditionService;
+
+    @Spy
+    private StageMetrics stageMetrics = new StageMetrics(meterRegistry);
 
     @BeforeEach
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this).close();
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(uploadExecutor).execute(any(Runnable.class));
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        when(metadataCache.get(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<String, Optional<ImageMetadata>>>getArgument(1).apply(invocation.getArgument(0)));
     }
 
     @Test
@@ -60,16 +129,118 @@ class ImageServiceTest {
         when(multipartFile.isEmpty()).thenReturn(false);
         when(multipartFile.getOriginalFilename()).thenReturn("test.jpg");
         when(multipartFile.getSize()).thenReturn(12345L);
-        when(multipartFile.getBytes()).thenReturn(new byte[0]);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("abc", "_content/abc", "\"etag\"", true));
 
         ResponseEntity<String> response = imageService.uploadImage(multipartFile);
 
         assertEquals(200, response.getStatusCode().value());
         assertTrue(Objects.requireNonNull(response.getBody()).contains("File uploaded successfully"));
-        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
-        verify(jdbcTemplate).update(anyString(), any(Object[].class));
-        // Verify the interactions with the S3 client, JDBC template, and SQS processor
-        verify(sqsProcessor).sendMessage(anyString());
+        verify(contentStore).store(multipartFile);
+        verify(multipartFile, never()).getBytes();
+        verify(imageCache).invalidate("test.jpg");
+        verify(metadataCache).invalidate("test.jpg");
+        verify(jdbcTemplate).batchUpdate(contains("ON DUPLICATE KEY UPDATE"), argThat((List<Object[]> rows) -> rows.size() == 1
+                && List.of("test.jpg", 12345L, "jpg", "\"etag\"", "abc", "_content/abc", "png", 640, 480)
+                .equals(List.of(rows.get(0)[0], rows.get(0)[1], rows.get(0)[2], rows.get(0)[4], rows.get(0)[5], rows.get(0)[6],
+                        rows.get(0)[7], rows.get(0)[8], rows.get(0)[9]))));
+        verify(notificationOutbox).add(contains("test.jpg"));
+        verify(transactionOperations).execute(any());
+        verify(renditionService).pregenerate("_content/abc");
+        assertEquals(1, meterRegistry.get("images.stage").tag("stage", "jdbc.insert").tag("outcome", "success").timer().count());
+        assertEquals(12345, meterRegistry.get("images.upload.size").summary().totalAmount());
+    }
+
+    @Test
+    void testUploadImage_DuplicateContentReusesStoredObject() throws IOException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("copy.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("abc", "_content/abc", "\"etag\"", false));
+
+        ResponseEntity<String> response = imageService.uploadImage(multipartFile);
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 1
+                && "copy.jpg".equals(rows.get(0)[0]) && "abc".equals(rows.get(0)[5])));
+        // The renditions of the shared object exist already
+        verifyNoInteractions(renditionService);
+    }
+
+    @Test
+    void testUploadImage_SameNameReplacesRowAndReleasesPreviousContent() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("test.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("new", "_content/new", "\"etag\"", true));
+        givenContentHashes("test.jpg", "old");
+        when(contentStore.release(List.of("old"))).thenReturn(List.of("_content/old"));
+
+        ResponseEntity<String> response = imageService.uploadImage(multipartFile);
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(jdbcTemplate).query(endsWith("FOR UPDATE"), any(RowCallbackHandler.class), any(Object[].class));
+        InOrder inOrder = inOrder(contentStore, notificationOutbox);
+        inOrder.verify(contentStore).release(List.of("old"));
+        inOrder.verify(notificationOutbox).add(anyString());
+        inOrder.verify(contentStore).deleteUnreferenced(List.of("_content/old"));
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    @Test
+    void testUploadImage_RolledBackReplacementKeepsPreviousContent() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("test.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("new", "_content/new", "\"etag\"", true));
+        givenContentHashes("test.jpg", "old");
+        when(contentStore.release(List.of("old"))).thenReturn(List.of("_content/old"));
+        doThrow(new CannotCreateTransactionException("Database is down")).when(notificationOutbox).add(anyString());
+
+        ResponseEntity<String> response = imageService.uploadImage(multipartFile);
+
+        assertEquals(500, response.getStatusCode().value());
+        // The old row comes back with the rollback, so its content must still exist
+        verify(contentStore, never()).deleteUnreferenced(List.of("_content/old"));
+        verify(contentStore).release(List.of("new"));
+    }
+
+    @Test
+    void testUploadImage_SameNameDeletesObjectStoredUnderTheName() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("legacy.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("new", "_content/new", "\"etag\"", true));
+        givenContentHashes("legacy.jpg", null);
+
+        imageService.uploadImage(multipartFile);
+
+        verify(s3Client).deleteObject(argThat((DeleteObjectRequest request) -> request.key().equals("legacy.jpg")));
+        verify(renditionService).deleteRenditions(List.of("legacy.jpg"));
+    }
+
+    @Test
+    void testUploadImage_MetadataFailureRollsBackNotification() throws IOException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("test.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PNG_HEADER));
+        when(contentStore.store(multipartFile)).thenReturn(new ImageContentStore.StoredContent("abc", "_content/abc", "\"etag\"", true));
+        doThrow(new CannotCreateTransactionException("Database is down"))
+                .doAnswer(invocation -> invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null))
+                .when(transactionOperations).execute(any());
+
+        ResponseEntity<String> response = imageService.uploadImage(multipartFile);
+
+        assertEquals(500, response.getStatusCode().value());
+        verifyNoInteractions(notificationOutbox);
+        verify(metadataCache, never()).invalidate(anyString());
+        // The content reference taken for the upload is given back
+        verify(contentStore).release(List.of("abc"));
     }
 
     @Test
@@ -81,7 +252,7 @@ class ImageServiceTest {
         assertEquals(400, response.getStatusCode().value());
         assertTrue(Objects.requireNonNull(response.getBody()).contains("File is empty"));
 
-        verifyNoInteractions(s3Client, jdbcTemplate, sqsProcessor);
+        verifyNoInteractions(s3Client, jdbcTemplate, notificationOutbox, contentStore);
     }
 
     @Test
@@ -94,7 +265,49 @@ class ImageServiceTest {
         assertEquals(400, response.getStatusCode().value());
         assertTrue(Objects.requireNonNull(response.getBody()).contains("File extension is not supported"));
 
-        verifyNoInteractions(s3Client, jdbcTemplate, sqsProcessor);
+        verifyNoInteractions(s3Client, jdbcTemplate, notificationOutbox, contentStore);
+    }
+
+    @Test
+    void testUploadImage_NotAnImageIsRejectedBeforeUpload() throws IOException {
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getOriginalFilename()).thenReturn("script.jpg");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream("#!/bin/sh".getBytes()));
+
+        ResponseEntity<String> response = imageService.uploadImage(multipartFile);
+
+        assertEquals(400, response.getStatusCode().value());
+        assertEquals("File is not a supported image", response.getBody());
+        verifyNoInteractions(s3Client, jdbcTemplate, notificationOutbox, contentStore);
+    }
+
+    @Test
+    void testUploadImages_ReportsResultPerFile() throws IOException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        MultipartFile good = new MockMultipartFile("images", "good.png", "image/png", PNG_HEADER);
+        MultipartFile empty = new MockMultipartFile("images", "empty.jpg", "image/jpeg", new byte[0]);
+        MultipartFile broken = new MockMultipartFile("images", "broken.png", "image/png", PNG_HEADER.clone());
+        MultipartFile text = new MockMultipartFile("images", "text.png", "image/png", "not an image".getBytes());
+        when(contentStore.store(good)).thenReturn(new ImageContentStore.StoredContent("abc", "_content/abc", "\"etag\"", true));
+        when(contentStore.store(broken)).thenThrow(new IOException("S3 put failed"));
+
+        ResponseEntity<List<UploadResult>> response = imageService.uploadImages(List.of(good, empty, broken, text));
+
+        List<UploadResult> results = Objects.requireNonNull(response.getBody());
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isUploaded());
+        assertFalse(results.get(1).isUploaded());
+        assertEquals("File is empty", results.get(1).getMessage());
+        assertFalse(results.get(2).isUploaded());
+        assertTrue(results.get(2).getMessage().contains("S3 put failed"));
+        assertFalse(results.get(3).isUploaded());
+        assertEquals("File is not a supported image", results.get(3).getMessage());
+        verify(contentStore, never()).store(text);
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 1
+                && "good.png".equals(rows.get(0)[0]) && "png".equals(rows.get(0)[7])));
+        verify(notificationOutbox).addAll(argThat(messages -> messages.size() == 1 && messages.get(0).contains("good.png")));
+        verify(transactionOperations).execute(any());
     }
 
     @Test
@@ -105,6 +318,51 @@ class ImageServiceTest {
         assertEquals("File deleted successfully", response.getBody());
         verify(s3Client).deleteObject(any(DeleteObjectRequest.class));
         verify(jdbcTemplate).update(anyString(), eq("test.jpg"));
+        verify(imageCache).invalidate("test.jpg");
+        verify(metadataCache).invalidate("test.jpg");
+        verify(renditionService).deleteRenditions(List.of("test.jpg"));
+    }
+
+    @Test
+    void testDeleteImage_ReleasesSharedContentInsteadOfDeletingIt() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("copy.jpg"))).thenReturn(List.of("abc"));
+        when(contentStore.release(List.of("abc"))).thenReturn(List.of());
+
+        ResponseEntity<String> response = imageService.deleteImage("copy.jpg");
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+        verify(jdbcTemplate).update("DELETE FROM image_metadata WHERE file_name = ?", "copy.jpg");
+        verify(contentStore).release(List.of("abc"));
+        verify(contentStore).deleteUnreferenced(List.of());
+        verifyNoInteractions(renditionService);
+    }
+
+    @Test
+    void testDeleteImage_LastReferenceDeletesContentAfterCommit() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("last.jpg"))).thenReturn(List.of("abc"));
+        when(contentStore.release(List.of("abc"))).thenReturn(List.of("_content/abc"));
+
+        imageService.deleteImage("last.jpg");
+
+        InOrder inOrder = inOrder(contentStore, transactionOperations);
+        inOrder.verify(transactionOperations).execute(any());
+        inOrder.verify(contentStore).deleteUnreferenced(List.of("_content/abc"));
+    }
+
+    @Test
+    void testDeleteImage_FailedCommitKeepsContent() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("last.jpg"))).thenReturn(List.of("abc"));
+        when(contentStore.release(List.of("abc"))).thenReturn(List.of("_content/abc"));
+        doAnswer(invocation -> {
+            invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null);
+            throw new CannotCreateTransactionException("Commit failed");
+        }).when(transactionOperations).execute(any());
+
+        ResponseEntity<String> response = imageService.deleteImage("last.jpg");
+
+        assertEquals(500, response.getStatusCode().value());
+        verify(contentStore, never()).deleteUnreferenced(anyList());
     }
 
     @Test
@@ -117,23 +375,141 @@ class ImageServiceTest {
         assertTrue(Objects.requireNonNull(response.getBody()).contains("Could not delete the file"));
     }
 
+    @Test
+    void testDeleteImages_ByNamesGroupsKeysAndReportsFailures() {
+        List<String> names = IntStream.range(0, 1500).mapToObj(i -> "image" + i + ".jpg").toList();
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("image3.jpg").code("AccessDenied").message("Access Denied").build())
+                        .build())
+                .thenReturn(DeleteObjectsResponse.builder().build());
+
+        ResponseEntity<BulkDeleteResult> response = imageService.deleteImages(new BulkDeleteRequest(names, null));
+
+        BulkDeleteResult result = Objects.requireNonNull(response.getBody());
+        assertEquals(1500, result.getRequested());
+        assertEquals(1499, result.getDeleted());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("image3.jpg", result.getFailures().get(0).getKey());
+        verify(s3Client).deleteObjects(argThat((DeleteObjectsRequest request) -> request.delete().objects().size() == 1000));
+        verify(s3Client).deleteObjects(argThat((DeleteObjectsRequest request) -> request.delete().objects().size() == 500));
+        // 999 + 500 deleted keys in chunks of at most 500
+        verify(jdbcTemplate, times(3)).update(startsWith("DELETE FROM image_metadata WHERE file_name IN"), any(Object[].class));
+        verify(imageCache, never()).invalidate("image3.jpg");
+    }
+
+    @Test
+    void testDeleteImages_ByPrefixDeletesEveryListedPage() {
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenReturn(ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("tmp/a.jpg").build(), S3Object.builder().key("tmp/b.jpg").build())
+                        .isTruncated(true)
+                        .nextContinuationToken("next")
+                        .build())
+                .thenReturn(ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("tmp/c.jpg").build(),
+                                S3Object.builder().key("_renditions/256/tmp/c.jpg").build())
+                        .isTruncated(false)
+                        .build());
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        ResponseEntity<BulkDeleteResult> response = imageService.deleteImages(new BulkDeleteRequest(null, "tmp/"));
+
+        BulkDeleteResult result = Objects.requireNonNull(response.getBody());
+        assertEquals(3, result.getRequested());
+        assertEquals(3, result.getDeleted());
+        verify(s3Client, times(2)).deleteObjects(any(DeleteObjectsRequest.class));
+        verify(renditionService).deleteRenditions(List.of("tmp/c.jpg"));
+    }
+
+    @Test
+    void testDeleteImages_SharedContentIsReleasedNotDeleted() throws Exception {
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("file_name")).thenReturn("copy.jpg");
+            when(rs.getString("content_hash")).thenReturn("abc");
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT file_name, content_hash"), any(RowCallbackHandler.class), any(Object[].class));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+        when(contentStore.release(List.of("abc"))).thenReturn(List.of("_content/abc"));
+
+        ResponseEntity<BulkDeleteResult> response = imageService.deleteImages(new BulkDeleteRequest(List.of("own.jpg", "copy.jpg"), null));
+
+        BulkDeleteResult result = Objects.requireNonNull(response.getBody());
+        assertEquals(2, result.getDeleted());
+        // Only the image stored under its own name is deleted by name
+        verify(s3Client).deleteObjects(argThat((DeleteObjectsRequest request) ->
+                request.delete().objects().size() == 1 && request.delete().objects().get(0).key().equals("own.jpg")));
+        verify(contentStore).release(List.of("abc"));
+        verify(contentStore).deleteUnreferenced(List.of("_content/abc"));
+        verify(renditionService).deleteRenditions(List.of("own.jpg"));
+    }
+
+    @Test
+    void testDeleteImages_RequiresExactlyOneSelector() {
+        assertEquals(400, imageService.deleteImages(new BulkDeleteRequest(null, null)).getStatusCode().value());
+        assertEquals(400, imageService.deleteImages(new BulkDeleteRequest(List.of("a.jpg"), "a")).getStatusCode().value());
+        verifyNoInteractions(s3Client, jdbcTemplate);
+    }
+
     @Test
     void testGetImageMetadata() {
         ImageMetadata mockMetadata = new ImageMetadata("test.jpg", 12345L, "jpg", new java.util.Date());
         when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
                 .thenReturn(mockMetadata);
 
-        ResponseEntity<ImageMetadata> response = imageService.getImageMetadata("test.jpg");
+        ResponseEntity<ImageMetadata> response = imageService.getImageMetadata("test.jpg", new HttpHeaders());
 
         assertEquals(200, response.getStatusCode().value());
         assertEquals(mockMetadata, response.getBody());
+        assertNotNull(response.getHeaders().getETag());
+        assertTrue(response.getHeaders().getLastModified() > 0);
+    }
+
+    @Test
+    void testGetImageMetadata_NotModified() {
+        ImageMetadata mockMetadata = new ImageMetadata("test.jpg", 12345L, "jpg", new java.util.Date());
+        mockMetadata.setId(7L);
+        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
+                .thenReturn(mockMetadata);
+        String eTag = imageService.getImageMetadata("test.jpg", new HttpHeaders()).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        ResponseEntity<ImageMetadata> response = imageService.getImageMetadata("test.jpg", headers);
+
+        assertEquals(304, response.getStatusCode().value());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void testGetImageMetadata_NotFound() {
+        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
+                .thenThrow(new EmptyResultDataAccessException(1));
+
+        ResponseEntity<ImageMetadata> response = imageService.getImageMetadata("missing.jpg", new HttpHeaders());
+
+        assertEquals(404, response.getStatusCode().value());
+    }
+
+    @Test
+    void testWarmUpMetadataCache() {
+        ReflectionTestUtils.setField(imageService, "metadataCacheWarmUpSize", 2);
+        ImageMetadata recent = new ImageMetadata("recent.jpg", 1L, "jpg", new java.util.Date());
+        when(jdbcTemplate.query(anyString(), any(ImageMetadataRowMapper.class), eq(2))).thenReturn(List.of(recent));
+
+        imageService.warmUpMetadataCache();
+
+        verify(metadataCache).put(recent);
     }
 
     @Test
     void testGetRandomImageMetadata() {
         ImageMetadata mockMetadata = new ImageMetadata("random.jpg", 12345L, "jpg", new java.util.Date());
-        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class)))
-                .thenReturn(mockMetadata);
+        when(randomImageSelector.pickOne()).thenReturn(Optional.of(mockMetadata));
 
         ResponseEntity<ImageMetadata> response = imageService.getRandomImageMetadata();
 
@@ -142,24 +518,183 @@ class ImageServiceTest {
     }
 
     @Test
-    void testDownloadImage_Success() {
+    void testGetRandomImageMetadata_EmptyTable() {
+        when(randomImageSelector.pickOne()).thenReturn(Optional.empty());
+
+        assertEquals(404, imageService.getRandomImageMetadata().getStatusCode().value());
+    }
+
+    @Test
+    void testGetRandomImagesMetadata() {
+        List<ImageMetadata> picked = List.of(new ImageMetadata("a.jpg", 1L, "jpg", new java.util.Date()));
+        when(randomImageSelector.pick(5)).thenReturn(picked);
+
+        ResponseEntity<List<ImageMetadata>> response = imageService.getRandomImagesMetadata(5);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(picked, response.getBody());
+        assertEquals(400, imageService.getRandomImagesMetadata(0).getStatusCode().value());
+    }
+
+    @Test
+    void testDownloadImage_Success() throws IOException {
         byte[] mockImageData = "image data".getBytes();
-        ResponseInputStream<GetObjectResponse> mockInputStream = new ResponseInputStream<>(mock(GetObjectResponse.class), new ByteArrayInputStream(mockImageData));
+        ResponseInputStream<GetObjectResponse> mockInputStream = new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) mockImageData.length).build(),
+                new ByteArrayInputStream(mockImageData));
         when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(mockInputStream);
 
-        ResponseEntity<Resource> response = imageService.downloadImage("test.jpg");
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", new HttpHeaders());
 
         assertEquals(200, response.getStatusCode().value());
-        assertArrayEquals(mockImageData, ((ByteArrayResource) Objects.requireNonNull(response.getBody())).getByteArray());
+        assertEquals(mockImageData.length, response.getHeaders().getContentLength());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Objects.requireNonNull(response.getBody()).writeTo(outputStream);
+        assertArrayEquals(mockImageData, outputStream.toByteArray());
+    }
+
+    @Test
+    void testDownloadImage_IfNoneMatchAnsweredFromMetadata() {
+        ImageMetadata metadata = new ImageMetadata("test.jpg", 10L, "jpg", new java.util.Date());
+        metadata.setETag("\"abc\"");
+        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
+                .thenReturn(metadata);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("W/\"abc\"");
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+
+        assertEquals(304, response.getStatusCode().value());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        verifyNoInteractions(s3Client, imageCache);
+    }
+
+    @Test
+    void testDownloadImage_IfModifiedSinceAnsweredFromMetadata() {
+        java.util.Date lastUpdate = new java.util.Date(1_700_000_000_000L);
+        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
+                .thenReturn(new ImageMetadata("test.jpg", 10L, "jpg", lastUpdate));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfModifiedSince(lastUpdate.getTime());
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+
+        assertEquals(304, response.getStatusCode().value());
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testDownloadImage_ChangedETagIsDownloaded() {
+        ImageMetadata metadata = new ImageMetadata("test.jpg", 4L, "jpg", new java.util.Date());
+        metadata.setETag("\"new\"");
+        when(jdbcTemplate.queryForObject(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class)))
+                .thenReturn(metadata);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"new\"").contentLength(4L).build(),
+                new ByteArrayInputStream("data".getBytes())));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"old\"");
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("\"new\"", response.getHeaders().getETag());
+        assertEquals(metadata.getLastUpdateDate().getTime() / 1000, response.getHeaders().getLastModified() / 1000);
+    }
+
+    @Test
+    void testDownloadImage_RangeRequest() {
+        ResponseInputStream<GetObjectResponse> mockInputStream = new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength(5L).contentRange("bytes 0-4/10").build(),
+                new ByteArrayInputStream("image".getBytes()));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(mockInputStream);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-4");
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+
+        assertEquals(206, response.getStatusCode().value());
+        assertEquals("bytes 0-4/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(s3Client).getObject(argThat((GetObjectRequest request) -> "bytes=0-4".equals(request.range())));
+    }
+
+    @Test
+    void testDownloadImage_MultipleRangesServeFullObject() {
+        ResponseInputStream<GetObjectResponse> mockInputStream = new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength(10L).build(),
+                new ByteArrayInputStream("image data".getBytes()));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(mockInputStream);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-1,5-6");
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(s3Client).getObject(argThat((GetObjectRequest request) -> request.range() == null));
+    }
+
+    @Test
+    void testDownloadImage_FreshCacheHitSkipsS3() throws IOException {
+        ImageCache.CachedImage cached = mock(ImageCache.CachedImage.class);
+        when(cached.size()).thenReturn(10L);
+        when(imageCache.get("test.jpg")).thenReturn(cached);
+        when(imageCache.isFresh(cached)).thenReturn(true);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=2-");
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", headers);
+        Objects.requireNonNull(response.getBody()).writeTo(new ByteArrayOutputStream());
+
+        assertEquals(206, response.getStatusCode().value());
+        assertEquals("bytes 2-9/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(cached).writeTo(any(), eq(2L), eq(8L));
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testDownloadImage_StaleCacheEntryIsInvalidatedWhenETagChanged() {
+        ImageCache.CachedImage cached = mock(ImageCache.CachedImage.class);
+        when(cached.eTag()).thenReturn("\"old\"");
+        when(imageCache.get("test.jpg")).thenReturn(cached);
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder().eTag("\"new\"").build());
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"new\"").contentLength(4L).build(),
+                new ByteArrayInputStream("data".getBytes())));
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", new HttpHeaders());
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(imageCache).invalidate("test.jpg");
+        verify(imageCache).newWriter("test.jpg", "\"new\"", 4L);
+    }
+
+    @Test
+    void testDownloadImage_NotFound() {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("missing.jpg", new HttpHeaders());
+
+        assertEquals(404, response.getStatusCode().value());
+        assertEquals(1, meterRegistry.get("images.stage").tag("stage", "s3.get").tag("outcome", "not_found").timer().count());
     }
 
     @Test
     void testDownloadImage_Failure() {
         when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(new RuntimeException("S3 download failed"));
 
-        ResponseEntity<Resource> response = imageService.downloadImage("test.jpg");
+        ResponseEntity<StreamingResponseBody> response = imageService.downloadImage("test.jpg", new HttpHeaders());
 
         assertEquals(500, response.getStatusCode().value());
         assertNull(response.getBody());
     }
+
+    private void givenContentHashes(String fileName, String contentHash) throws Exception {
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("file_name")).thenReturn(fileName);
+            when(rs.getString("content_hash")).thenReturn(contentHash);
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT file_name, content_hash"), any(RowCallbackHandler.class), any(Object[].class));
+    }
 }
@@ -0,0 +1,93 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.internal.util.EC2MetadataUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+
+class InstanceIdentityTest {
+
+    @Test
+    void testResolvesFromMetadataOnceAndServesFromMemory() {
+        try (MockedStatic<EC2MetadataUtils> metadata = mockStatic(EC2MetadataUtils.class)) {
+            metadata.when(EC2MetadataUtils::getEC2InstanceRegion).thenReturn("eu-west-1");
+            metadata.when(EC2MetadataUtils::getAvailabilityZone).thenReturn("eu-west-1b");
+
+            InstanceIdentity identity = new InstanceIdentity(true, "us-east-1", "unknown", 3, Duration.ZERO);
+            for (int i = 0; i < 3; i++) {
+                assertEquals("eu-west-1", identity.region());
+                assertEquals("eu-west-1b", identity.availabilityZone());
+            }
+
+            assertEquals(Region.EU_WEST_1, identity.awsRegion());
+            metadata.verify(EC2MetadataUtils::getEC2InstanceRegion, times(1));
+            metadata.verify(EC2MetadataUtils::getAvailabilityZone, times(1));
+        }
+    }
+
+    @Test
+    void testFailsStartupWhenMetadataStaysUnreachable() {
+        try (MockedStatic<EC2MetadataUtils> metadata = mockStatic(EC2MetadataUtils.class)) {
+            metadata.when(EC2MetadataUtils::getEC2InstanceRegion)
+                    .thenThrow(SdkClientException.create("Unable to contact EC2 metadata service."));
+
+            // The clients would otherwise be built for the configured region
+            assertThrows(IllegalStateException.class,
+                    () -> new InstanceIdentity(true, "us-east-2", "us-east-2a", 3, Duration.ZERO));
+            metadata.verify(EC2MetadataUtils::getEC2InstanceRegion, times(3));
+        }
+    }
+
+    @Test
+    void testRetriesStartupReadAfterTransientFailure() {
+        try (MockedStatic<EC2MetadataUtils> metadata = mockStatic(EC2MetadataUtils.class)) {
+            metadata.when(EC2MetadataUtils::getEC2InstanceRegion)
+                    .thenThrow(SdkClientException.create("Unable to contact EC2 metadata service."))
+                    .thenReturn("eu-central-1");
+            metadata.when(EC2MetadataUtils::getAvailabilityZone).thenReturn("eu-central-1a");
+
+            InstanceIdentity identity = new InstanceIdentity(true, "us-east-1", "unknown", 3, Duration.ZERO);
+
+            assertEquals("eu-central-1", identity.region());
+            assertEquals("eu-central-1a", identity.availabilityZone());
+        }
+    }
+
+    @Test
+    void testRefreshUpdatesValuesAndKeepsLastValueOnFailure() {
+        try (MockedStatic<EC2MetadataUtils> metadata = mockStatic(EC2MetadataUtils.class)) {
+            metadata.when(EC2MetadataUtils::getEC2InstanceRegion)
+                    .thenReturn("ap-south-1")
+                    .thenThrow(SdkClientException.create("Unable to contact EC2 metadata service."));
+            metadata.when(EC2MetadataUtils::getAvailabilityZone).thenReturn("ap-south-1a", "ap-south-1b");
+
+            InstanceIdentity identity = new InstanceIdentity(true, "us-east-1", "unknown", 3, Duration.ZERO);
+            assertEquals("ap-south-1a", identity.availabilityZone());
+
+            // A failed refresh keeps what was read before
+            identity.refresh();
+            assertEquals("ap-south-1", identity.region());
+            assertEquals("ap-south-1a", identity.availabilityZone());
+        }
+    }
+
+    @Test
+    void testDisabledMetadataNeverCallsTheEndpoint() {
+        try (MockedStatic<EC2MetadataUtils> metadata = mockStatic(EC2MetadataUtils.class)) {
+            InstanceIdentity identity = new InstanceIdentity(false, "us-west-2", "local", 3, Duration.ZERO);
+            identity.refresh();
+
+            assertEquals("us-west-2", identity.region());
+            assertEquals("local", identity.availabilityZone());
+            metadata.verifyNoInteractions();
+        }
+    }
+}
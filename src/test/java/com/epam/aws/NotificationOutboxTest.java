@@ -0,0 +1,169 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationOutboxTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionOperations transactionOperations;
+
+    @Mock
+    private SqsProcessor sqsProcessor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NotificationOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        meterRegistry = new SimpleMeterRegistry();
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        outbox = new NotificationOutbox(jdbcTemplate, transactionOperations, sqsProcessor, meterRegistry, 3,
+                Duration.ofSeconds(1), Duration.ofMinutes(5), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testAddAll_InsertsAllMessagesInOneBatch() {
+        outbox.addAll(List.of("first", "second"));
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO notification_outbox"),
+                argThat((List<Object[]> rows) -> rows.size() == 2 && "first".equals(rows.get(0)[0])));
+        verifyNoInteractions(sqsProcessor);
+    }
+
+    @Test
+    void testRelayBatch_DeletesSentAndReschedulesFailedMessages() throws Exception {
+        givenPending(new Object[]{1L, "one", 0}, new Object[]{2L, "two", 2});
+        when(sqsProcessor.sendMessageBatch(anyMap())).thenReturn(List.of("2"));
+
+        boolean more = outbox.relayBatch();
+
+        assertFalse(more);
+        verify(sqsProcessor).sendMessageBatch(Map.of("1", "one", "2", "two"));
+        verify(jdbcTemplate).batchUpdate(eq("DELETE FROM notification_outbox WHERE id = ?"),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && Long.valueOf(1).equals(rows.get(0)[0])));
+        // Third attempt waits 1s * 2^2
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE notification_outbox SET attempts = attempts + 1"),
+                argThat((List<Object[]> rows) -> rows.size() == 1
+                        && new Timestamp(NOW.plusSeconds(4).toEpochMilli()).equals(rows.get(0)[0])
+                        && Long.valueOf(2).equals(rows.get(0)[1])));
+        assertEquals(1, meterRegistry.counter("notifications.outbox.sent").count());
+        assertEquals(1, meterRegistry.counter("notifications.outbox.failed").count());
+    }
+
+    @Test
+    void testRelayBatch_RecordsBatchSizeAndFlushLatency() throws Exception {
+        givenPending(new Object[]{1L, "one", 0}, new Object[]{2L, "two", 0});
+        when(sqsProcessor.sendMessageBatch(anyMap())).thenReturn(List.of());
+
+        outbox.relayBatch();
+
+        assertEquals(1, meterRegistry.summary("notifications.outbox.batch.size").count());
+        assertEquals(2, meterRegistry.summary("notifications.outbox.batch.size").totalAmount());
+        assertEquals(1, meterRegistry.timer("notifications.outbox.flush").count());
+    }
+
+    @Test
+    void testRelayBatch_ReschedulesWholeBatch_WhenSendingThrows() throws Exception {
+        givenPending(new Object[]{1L, "one", 0}, new Object[]{2L, "two", 0});
+        when(sqsProcessor.sendMessageBatch(anyMap())).thenThrow(new IllegalStateException("client closed"));
+
+        boolean more = outbox.relayBatch();
+
+        assertFalse(more);
+        verify(jdbcTemplate, never()).batchUpdate(eq("DELETE FROM notification_outbox WHERE id = ?"), anyList());
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE notification_outbox SET attempts = attempts + 1"),
+                argThat((List<Object[]> rows) -> rows.size() == 2));
+    }
+
+    @Test
+    void testRelay_DoesNotThrow_WhenRelayFailsUnexpectedly() {
+        doThrow(new IllegalStateException("unexpected")).when(transactionOperations).execute(any());
+
+        assertDoesNotThrow(() -> outbox.relay());
+    }
+
+    @Test
+    void testRelay_KeepsDrainingWhileBatchesAreFull() throws Exception {
+        givenPending(new Object[]{1L, "one", 0}, new Object[]{2L, "two", 0}, new Object[]{3L, "three", 0});
+        when(sqsProcessor.sendMessageBatch(anyMap())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT created_at"), any(RowMapper.class))).thenReturn(List.of());
+
+        outbox.relay();
+
+        // The first full batch triggers a second claim, which finds nothing more
+        verify(transactionOperations, times(2)).execute(any());
+        verify(sqsProcessor, times(1)).sendMessageBatch(anyMap());
+    }
+
+    @Test
+    void testRelay_ReportsAgeOfOldestPendingMessageAsLag() {
+        when(jdbcTemplate.query(startsWith("SELECT id"), any(RowMapper.class), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT created_at"), any(RowMapper.class)))
+                .thenReturn(List.of(new Timestamp(NOW.minusSeconds(30).toEpochMilli())));
+
+        outbox.relay();
+
+        assertEquals(30_000, outbox.lagMillis());
+        assertEquals(30.0, meterRegistry.get("notifications.outbox.lag").gauge().value());
+    }
+
+    @Test
+    void testBackoff_GrowsExponentiallyUpToMax() {
+        assertEquals(Duration.ofSeconds(1), outbox.backoff(0));
+        assertEquals(Duration.ofSeconds(8), outbox.backoff(3));
+        assertEquals(Duration.ofMinutes(5), outbox.backoff(9));
+        assertEquals(Duration.ofMinutes(5), outbox.backoff(Integer.MAX_VALUE));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenPending(Object[]... rows) throws Exception {
+        List<ResultSet> resultSets = new ArrayList<>();
+        for (Object[] row : rows) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("id")).thenReturn((Long) row[0]);
+            when(rs.getString("message")).thenReturn((String) row[1]);
+            when(rs.getInt("attempts")).thenReturn((Integer) row[2]);
+            resultSets.add(rs);
+        }
+        when(jdbcTemplate.query(startsWith("SELECT id"), any(RowMapper.class), any(), any()))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    List<Object> mapped = new ArrayList<>();
+                    for (int i = 0; i < resultSets.size(); i++) {
+                        mapped.add(mapper.mapRow(resultSets.get(i), i));
+                    }
+                    resultSets.clear();
+                    return mapped;
+                });
+    }
+}
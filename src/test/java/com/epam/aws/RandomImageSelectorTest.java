@@ -0,0 +1,176 @@
+package com.epam.aws;
+
+import com.epam.aws.model.ImageMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RandomImageSelectorTest {
+
+    private static final String PROBE_SQL = "SELECT * FROM image_metadata WHERE id >= ? ORDER BY id LIMIT 1";
+    private static final String SMALL_TABLE_SQL = "SELECT * FROM image_metadata ORDER BY id LIMIT ?";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private RandomImageSelector selector;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        selector = new RandomImageSelector(jdbcTemplate);
+    }
+
+    @Test
+    void testPickOne_ProbesPrimaryKeyInsteadOfSorting() throws Exception {
+        givenIdRange(1, 1000, 1000);
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> List.of(row(invocation.getArgument(2))));
+
+        ImageMetadata picked = selector.pickOne().orElseThrow();
+
+        assertTrue(picked.getId() >= 1 && picked.getId() <= 1000);
+        verify(jdbcTemplate).query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong());
+        verify(jdbcTemplate, never()).queryForObject(contains("RAND()"), any(RowMapper.class));
+    }
+
+    @Test
+    void testPick_ReturnsDistinctRows() throws Exception {
+        givenIdRange(1, 1000, 1000);
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> List.of(row(invocation.getArgument(2))));
+
+        List<ImageMetadata> picked = selector.pick(10);
+
+        assertEquals(10, picked.size());
+        assertEquals(10, picked.stream().map(ImageMetadata::getId).distinct().count());
+    }
+
+    @Test
+    void testPick_WrapsAroundWhenProbeIsPastLastRow() throws Exception {
+        givenIdRange(1, 1000, 500);
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> invocation.<Long>getArgument(2) == 1L ? List.of(row(1L)) : List.of());
+
+        List<ImageMetadata> picked = selector.pick(1);
+
+        assertEquals(1L, picked.get(0).getId());
+    }
+
+    @Test
+    void testPick_RefreshesRangeWhenProbeLandsPastCachedMax() throws Exception {
+        givenIdRange(1, 1000, 1000);
+        // Every probe finds a row added after the cached range was read
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> List.of(row(invocation.<Long>getArgument(2) + 5000)));
+
+        selector.pick(1);
+        selector.pick(1);
+
+        // Initial read, then one refresh per pick
+        verify(jdbcTemplate, times(3)).queryForObject(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    void testPick_ReadsSmallTablesWithOneQuery() throws Exception {
+        // Ten surviving rows spread over a wide id range, as estimated by table_rows
+        givenIdRange(1, 1_000_000, 10);
+        List<ImageMetadata> rows = LongStream.range(0, 10).mapToObj(i -> row(i * 100_000 + 1)).toList();
+        when(jdbcTemplate.query(eq(SMALL_TABLE_SQL), any(ImageMetadataRowMapper.class), eq(RandomImageSelector.SMALL_TABLE_ROWS + 1)))
+                .thenReturn(rows);
+
+        List<ImageMetadata> picked = selector.pick(100);
+
+        assertEquals(Set.copyOf(rows), Set.copyOf(picked));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, never()).query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong());
+    }
+
+    @Test
+    void testPick_NeverCountsRows() throws Exception {
+        givenIdRange(1, 1000, 1000);
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> List.of(row(invocation.getArgument(2))));
+
+        selector.pick(5);
+
+        verify(jdbcTemplate).queryForObject(argThat((String sql) -> !sql.contains("COUNT(")), any(RowMapper.class));
+    }
+
+    @Test
+    void testPick_IdSpanBoundsTheEstimate() throws Exception {
+        // table_rows still reports rows that were deleted since the statistics were taken
+        givenIdRange(1, 50, 10_000);
+        when(jdbcTemplate.query(eq(SMALL_TABLE_SQL), any(ImageMetadataRowMapper.class), anyInt()))
+                .thenReturn(List.of(row(1), row(50)));
+
+        assertEquals(2, selector.pick(10).size());
+        verify(jdbcTemplate, never()).query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong());
+    }
+
+    @Test
+    void testPick_ProbesUntilNextRefresh_WhenLowEstimateIsStale() throws Exception {
+        givenIdRange(1, 100_000, 10);
+        List<ImageMetadata> rows = LongStream.rangeClosed(1, RandomImageSelector.SMALL_TABLE_ROWS + 1).mapToObj(i -> row(i)).toList();
+        when(jdbcTemplate.query(eq(SMALL_TABLE_SQL), any(ImageMetadataRowMapper.class), anyInt())).thenReturn(rows);
+        when(jdbcTemplate.query(eq(PROBE_SQL), any(ImageMetadataRowMapper.class), anyLong()))
+                .thenAnswer(invocation -> List.of(row(invocation.getArgument(2))));
+
+        assertEquals(3, selector.pick(3).size());
+        assertEquals(3, selector.pick(3).size());
+
+        // The second pick goes straight to probing
+        verify(jdbcTemplate, times(1)).query(eq(SMALL_TABLE_SQL), any(ImageMetadataRowMapper.class), anyInt());
+    }
+
+    @Test
+    void testPick_CapsCountByTableSize() throws Exception {
+        givenIdRange(5, 6, 2);
+        when(jdbcTemplate.query(eq(SMALL_TABLE_SQL), any(ImageMetadataRowMapper.class), anyInt()))
+                .thenReturn(List.of(row(5), row(6)));
+
+        assertEquals(2, selector.pick(50).size());
+    }
+
+    @Test
+    void testPick_RefreshesEmptyRangeOnEveryCall() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.wasNull()).thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class)))
+                .thenAnswer(invocation -> invocation.<RowMapper<?>>getArgument(1).mapRow(rs, 0));
+
+        assertTrue(selector.pick(3).isEmpty());
+        assertTrue(selector.pick(3).isEmpty());
+
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), any(RowMapper.class));
+        verify(jdbcTemplate, never()).query(anyString(), any(ImageMetadataRowMapper.class), any(Object[].class));
+    }
+
+    private void givenIdRange(long min, long max, long estimatedRows) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("min_id")).thenReturn(min);
+        when(rs.getLong("max_id")).thenReturn(max);
+        when(rs.getLong("estimated_rows")).thenReturn(estimatedRows);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class)))
+                .thenAnswer(invocation -> invocation.<RowMapper<?>>getArgument(1).mapRow(rs, 0));
+    }
+
+    private static ImageMetadata row(long id) {
+        ImageMetadata metadata = new ImageMetadata("image" + id + ".jpg", 1L, "jpg", new Date());
+        metadata.setId(id);
+        return metadata;
+    }
+}
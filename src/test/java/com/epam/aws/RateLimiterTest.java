@@ -0,0 +1,65 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testReserve_SpacesPermitsEvenly() {
+        AtomicLong now = new AtomicLong(1_000 * MILLIS);
+        RateLimiter limiter = new RateLimiter(10, 1, now::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(100 * MILLIS, limiter.reserve());
+        assertEquals(200 * MILLIS, limiter.reserve());
+        assertEquals(Duration.ofMillis(100), limiter.interval());
+    }
+
+    @Test
+    void testReserve_AllowsBurstAfterIdlePeriod() {
+        AtomicLong now = new AtomicLong(1_000 * MILLIS);
+        RateLimiter limiter = new RateLimiter(10, 3, now::get);
+
+        now.addAndGet(5_000 * MILLIS);
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(100 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void testReserve_IdleTimeDoesNotAccumulateBeyondBurst() {
+        AtomicLong now = new AtomicLong(0);
+        RateLimiter limiter = new RateLimiter(10, 1, now::get);
+
+        now.addAndGet(60_000 * MILLIS);
+        assertEquals(0, limiter.reserve());
+        assertEquals(100 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void testAcquire_WaitsForPermit() throws Exception {
+        RateLimiter limiter = new RateLimiter(20, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+        }
+
+        assertTrue(System.nanoTime() - start >= 2 * 50 * MILLIS - MILLIS);
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(10, 0));
+    }
+}
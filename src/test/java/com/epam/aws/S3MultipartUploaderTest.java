@@ -0,0 +1,165 @@
+package com.epam.aws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class S3MultipartUploaderTest {
+
+    private static final int PART_SIZE = S3MultipartUploader.MIN_PART_SIZE;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    private S3MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        // Run parts on the calling thread to keep the test deterministic
+        uploader = new S3MultipartUploader(s3Client, (S3AsyncClient) null, Runnable::run, PART_SIZE, 2, PART_SIZE);
+    }
+
+    @Test
+    void testUpload_SmallFileUsesSinglePut() throws Exception {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"etag\"").build());
+
+        String eTag = uploader.upload("bucket", "small.jpg", new ByteArrayInputStream(new byte[1024]), 1024);
+
+        assertEquals("\"etag\"", eTag);
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUpload_LargeFileUsesMultipartUpload() throws Exception {
+        int size = PART_SIZE * 2 + 100;
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("part-" + invocation.getArgument(0, UploadPartRequest.class).partNumber())
+                        .build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("\"multipart\"").build());
+
+        String eTag = uploader.upload("bucket", "large.jpg", new ByteArrayInputStream(new byte[size]), size);
+
+        assertEquals("\"multipart\"", eTag);
+        ArgumentCaptor<UploadPartRequest> partCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(partCaptor.capture(), any(RequestBody.class));
+        assertEquals(List.of((long) PART_SIZE, (long) PART_SIZE, 100L),
+                partCaptor.getAllValues().stream().map(UploadPartRequest::contentLength).toList());
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        assertEquals(List.of(1, 2, 3), completeCaptor.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber).toList());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testUpload_AbortsWhenPartFails() {
+        int size = PART_SIZE * 2;
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("part failed").build());
+
+        assertThrows(S3Exception.class,
+                () -> uploader.upload("bucket", "large.jpg", new ByteArrayInputStream(new byte[size]), size));
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testEffectivePartSize_RespectsPartLimit() {
+        long hugeObject = (long) PART_SIZE * S3MultipartUploader.MAX_PARTS * 2;
+
+        assertEquals(PART_SIZE, uploader.effectivePartSize(PART_SIZE * 3L));
+        assertTrue((long) uploader.effectivePartSize(hugeObject) * S3MultipartUploader.MAX_PARTS >= hugeObject);
+    }
+
+    @Test
+    void testUpload_AsyncClientConsumesStream() throws Exception {
+        S3MultipartUploader asyncUploader = new S3MultipartUploader(s3Client, s3AsyncClient, Runnable::run, PART_SIZE, 2, PART_SIZE);
+        AtomicLong received = new AtomicLong();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> consume(invocation.getArgument(1), received,
+                        PutObjectResponse.builder().eTag("\"async\"").build(), null));
+
+        int size = PART_SIZE * 2 + 100;
+        String eTag = asyncUploader.upload("bucket", "large.jpg", new ByteArrayInputStream(new byte[size]), size);
+
+        assertEquals("\"async\"", eTag);
+        assertEquals(size, received.get());
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testUpload_AsyncClientFailureIsRethrown() {
+        S3MultipartUploader asyncUploader = new S3MultipartUploader(s3Client, s3AsyncClient, Runnable::run, PART_SIZE, 2, PART_SIZE);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> consume(invocation.getArgument(1), new AtomicLong(), null,
+                        S3Exception.builder().message("put failed").build()));
+
+        assertThrows(S3Exception.class,
+                () -> asyncUploader.upload("bucket", "small.jpg", new ByteArrayInputStream(new byte[1024]), 1024));
+    }
+
+    // Drains the body like the SDK would and completes the response once the stream has been read
+    private static CompletableFuture<PutObjectResponse> consume(AsyncRequestBody body, AtomicLong received,
+                                                                PutObjectResponse response, RuntimeException failure) {
+        CompletableFuture<PutObjectResponse> future = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                received.addAndGet(buffer.remaining());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(response);
+                }
+            }
+        });
+        return future;
+    }
+}
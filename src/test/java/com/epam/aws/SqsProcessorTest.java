@@ -2,12 +2,17 @@ package com.epam.aws;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -19,7 +24,6 @@ class SqsProcessorTest {
 
     private final String queueUrl = "http://localhost:4566/000000000000/test-queue";
 
-    @InjectMocks
     private SqsProcessor sqsProcessor;
 
     @BeforeEach
@@ -29,14 +33,30 @@ class SqsProcessorTest {
     }
 
     @Test
-    void testSendMessage() {
-        String message = "Test SQS message";
+    void testSendMessageBatch_SplitsIntoBatchesOfTen() {
+        Map<String, String> messages = new LinkedHashMap<>();
+        for (int i = 0; i < 12; i++) {
+            messages.put(String.valueOf(i), "message " + i);
+        }
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenReturn(SendMessageBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder().id("3").code("InternalError").build())
+                        .build())
+                .thenReturn(SendMessageBatchResponse.builder().build());
+
+        List<String> failed = sqsProcessor.sendMessageBatch(messages);
+
+        assertEquals(List.of("3"), failed);
+        verify(sqsClient).sendMessageBatch(argThat((SendMessageBatchRequest request) -> request.entries().size() == 10));
+        verify(sqsClient).sendMessageBatch(argThat((SendMessageBatchRequest request) -> request.entries().size() == 2));
+    }
+
+    @Test
+    void testSendMessageBatch_ReportsWholeBatchWhenCallFails() {
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenThrow(SqsException.builder().message("down").build());
 
-        sqsProcessor.sendMessage(message);
+        List<String> failed = sqsProcessor.sendMessageBatch(Map.of("a", "message"));
 
-        verify(sqsClient, times(1)).sendMessage(argThat((SendMessageRequest sendRequest) ->
-                sendRequest.queueUrl().equals(queueUrl) &&
-                        sendRequest.messageBody().equals(message)
-        ));
+        assertEquals(List.of("a"), failed);
     }
 }
@@ -0,0 +1,59 @@
+package com.epam.aws;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StageMetrics stageMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stageMetrics = new StageMetrics(meterRegistry);
+    }
+
+    @Test
+    void testRecord_TagsStageAndOutcome() {
+        assertEquals("etag", stageMetrics.record(StageMetrics.S3_PUT, () -> "etag"));
+        assertThrows(NoSuchKeyException.class, () -> stageMetrics.record(StageMetrics.S3_GET, () -> {
+            throw NoSuchKeyException.builder().build();
+        }));
+        assertThrows(EmptyResultDataAccessException.class, () -> stageMetrics.record(StageMetrics.JDBC_SELECT, () -> {
+            throw new EmptyResultDataAccessException(1);
+        }));
+        assertThrows(IOException.class, () -> stageMetrics.record(StageMetrics.S3_PUT, () -> {
+            throw new IOException("connection reset");
+        }));
+
+        assertEquals(1, timer(StageMetrics.S3_PUT, "success").count());
+        assertEquals(1, timer(StageMetrics.S3_PUT, "error").count());
+        assertEquals(1, timer(StageMetrics.S3_GET, "not_found").count());
+        assertEquals(1, timer(StageMetrics.JDBC_SELECT, "not_found").count());
+    }
+
+    @Test
+    void testRecordSizes() {
+        stageMetrics.recordUploadSize(2048);
+        stageMetrics.recordDownloadSize(4096);
+        stageMetrics.recordDownloadSize(1024);
+
+        assertEquals(2048, meterRegistry.get("images.upload.size").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("images.download.size").summary().count());
+        assertEquals("bytes", meterRegistry.get("images.download.size").summary().getId().getBaseUnit());
+    }
+
+    private Timer timer(String stage, String outcome) {
+        return meterRegistry.get(StageMetrics.STAGE_TIMER).tag("stage", stage).tag("outcome", outcome).timer();
+    }
+}
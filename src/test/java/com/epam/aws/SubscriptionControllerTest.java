@@ -1,5 +1,7 @@
 package com.epam.aws;
 
+import com.epam.aws.model.SubscriptionRequest;
+import com.epam.aws.model.SubscriptionResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -20,6 +22,9 @@ class SubscriptionControllerTest {
     @Mock
     private SubscriptionService subscriptionService;
 
+    @Mock
+    private SubscriptionImportService subscriptionImportService;
+
     @InjectMocks
     private SubscriptionController subscriptionController;
 
@@ -56,6 +61,25 @@ class SubscriptionControllerTest {
         verify(subscriptionService, times(1)).subscribe(email, messageTypes);
     }
 
+    @Test
+    void testSubscribeAll() {
+        List<SubscriptionRequest> requests = List.of(new SubscriptionRequest("test@example.com", List.of("jpg")));
+        ResponseEntity<List<SubscriptionResult>> expectedResponse = ResponseEntity.ok(
+                List.of(SubscriptionResult.subscribed("test@example.com", "Subscription request sent, waiting for confirmation")));
+        when(subscriptionImportService.subscribeAll(requests)).thenReturn(expectedResponse);
+
+        assertEquals(expectedResponse, subscriptionController.subscribeAll(requests));
+    }
+
+    @Test
+    void testSubscribeAllCsv() {
+        String csv = "test@example.com,jpg";
+        ResponseEntity<List<SubscriptionResult>> expectedResponse = ResponseEntity.ok(List.of());
+        when(subscriptionImportService.subscribeAllCsv(csv)).thenReturn(expectedResponse);
+
+        assertEquals(expectedResponse, subscriptionController.subscribeAllCsv(csv));
+    }
+
     @Test
     void testUnsubscribeSuccess() {
         String email = "test@example.com";
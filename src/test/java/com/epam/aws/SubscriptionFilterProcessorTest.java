@@ -0,0 +1,134 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionEntity;
+import com.epam.aws.repository.SubscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SetSubscriptionAttributesRequest;
+import software.amazon.awssdk.services.sns.model.SnsException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SubscriptionFilterProcessorTest {
+
+    private static final Instant NOW = Instant.parse("2024-10-01T12:00:00Z");
+    private static final String ARN = "arn:aws:sns:us-west-2:123456789012:test-subscription";
+
+    @Mock
+    private SnsClient snsClient;
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+
+    @Mock
+    private SubscriptionIndex subscriptionIndex;
+
+    private SubscriptionFilterProcessor processor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        processor = new SubscriptionFilterProcessor(snsClient, subscriptionRepository, subscriptionIndex, Runnable::run,
+                new RateLimiter(1000, 1000), 2, 5, Duration.ofMinutes(1), Duration.ofMinutes(30),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void checkAndProcessSubscriptions_ShouldAddFilterToSubscription_WhenSubscriptionIsConfirmed() {
+        SubscriptionEntity entity = new SubscriptionEntity("test@example.com", List.of("jpg", "png"));
+        when(subscriptionRepository.findDue(eq(NOW), any(Pageable.class))).thenReturn(List.of(entity));
+        when(subscriptionIndex.findSubscriptionArns(Set.of("test@example.com"))).thenReturn(Map.of("test@example.com", ARN));
+
+        processor.checkAndProcessSubscriptions();
+
+        verify(snsClient, times(1)).setSubscriptionAttributes(SetSubscriptionAttributesRequest.builder()
+                .subscriptionArn(ARN)
+                .attributeName("FilterPolicy")
+                .attributeValue("{ \"imageExtension\": [\"jpg\",\"png\"] }")
+                .build());
+        verify(subscriptionRepository).deleteAllInBatch(List.of(entity));
+        verify(subscriptionRepository).saveAll(List.of());
+    }
+
+    @Test
+    void checkAndProcessSubscriptions_ShouldDoNothing_WhenNoSubscriptionsAreDue() {
+        when(subscriptionRepository.findDue(eq(NOW), any(Pageable.class))).thenReturn(List.of());
+
+        processor.checkAndProcessSubscriptions();
+
+        verifyNoInteractions(subscriptionIndex, snsClient);
+    }
+
+    @Test
+    void checkAndProcessSubscriptions_ShouldBackOff_WhenSubscriptionIsStillPending() {
+        SubscriptionEntity entity = new SubscriptionEntity("pending@example.com", List.of("jpg"));
+        entity.setAttempts(2);
+        when(subscriptionRepository.findDue(eq(NOW), any(Pageable.class))).thenReturn(List.of(entity));
+        when(subscriptionIndex.findSubscriptionArns(any())).thenReturn(Map.of());
+
+        processor.checkAndProcessSubscriptions();
+
+        verify(snsClient, never()).setSubscriptionAttributes(any(SetSubscriptionAttributesRequest.class));
+        assertEquals(3, entity.getAttempts());
+        assertEquals(NOW.plus(Duration.ofMinutes(4)), entity.getNextCheckAt());
+        verify(subscriptionRepository).saveAll(List.of(entity));
+    }
+
+    @Test
+    void checkAndProcessSubscriptions_ShouldRetryConfirmedSubscription_WhenSnsFails() {
+        SubscriptionEntity failing = new SubscriptionEntity("failing@example.com", List.of("jpg"));
+        SubscriptionEntity working = new SubscriptionEntity("working@example.com", List.of("png"));
+        when(subscriptionRepository.findDue(eq(NOW), any(Pageable.class))).thenReturn(List.of(failing, working), List.of());
+        when(subscriptionIndex.findSubscriptionArns(any()))
+                .thenReturn(Map.of("failing@example.com", ARN + "-1", "working@example.com", ARN + "-2"));
+        when(snsClient.setSubscriptionAttributes(any(SetSubscriptionAttributesRequest.class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0, SetSubscriptionAttributesRequest.class).subscriptionArn().endsWith("-1")) {
+                throw SnsException.builder().message("Rate exceeded").build();
+            }
+            return null;
+        });
+
+        processor.checkAndProcessSubscriptions();
+
+        verify(subscriptionRepository).deleteAllInBatch(List.of(working));
+        verify(subscriptionRepository).saveAll(List.of(failing));
+        assertEquals(NOW.plus(Duration.ofMinutes(1)), failing.getNextCheckAt());
+        // A full batch is followed by another query
+        verify(subscriptionRepository, times(2)).findDue(eq(NOW), any(Pageable.class));
+    }
+
+    @Test
+    void checkAndProcessSubscriptions_ShouldDropSubscription_AfterMaxAttempts() {
+        SubscriptionEntity entity = new SubscriptionEntity("expired@example.com", List.of("jpg"));
+        entity.setAttempts(4);
+        when(subscriptionRepository.findDue(eq(NOW), any(Pageable.class))).thenReturn(List.of(entity));
+        when(subscriptionIndex.findSubscriptionArns(any())).thenReturn(Map.of());
+
+        processor.checkAndProcessSubscriptions();
+
+        verify(subscriptionRepository).deleteAllInBatch(List.of(entity));
+        verify(subscriptionRepository).saveAll(List.of());
+    }
+
+    @Test
+    void backoff_ShouldDoubleUpToMax() {
+        assertEquals(Duration.ofMinutes(1), processor.backoff(0));
+        assertEquals(Duration.ofMinutes(16), processor.backoff(4));
+        assertEquals(Duration.ofMinutes(30), processor.backoff(5));
+        assertEquals(Duration.ofMinutes(30), processor.backoff(1000));
+    }
+}
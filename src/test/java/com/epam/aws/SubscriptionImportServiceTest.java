@@ -0,0 +1,125 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionRequest;
+import com.epam.aws.model.SubscriptionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.SubscribeRequest;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class SubscriptionImportServiceTest {
+
+    @Mock
+    private SnsClient snsClient;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SubscriptionImportService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        service = new SubscriptionImportService(snsClient, jdbcTemplate, Runnable::run, new RateLimiter(1000, 1000), 3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void subscribeAll_ShouldSubscribeEveryAddressAndInsertMessageTypesInOneBatch() {
+        ResponseEntity<List<SubscriptionResult>> response = service.subscribeAll(List.of(
+                new SubscriptionRequest("ann@example.com", List.of("jpg", " png", "")),
+                new SubscriptionRequest("bob@example.com", List.of())));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of("ann@example.com", "bob@example.com"),
+                response.getBody().stream().map(SubscriptionResult::getEmail).toList());
+        assertTrue(response.getBody().stream().allMatch(SubscriptionResult::isSubscribed));
+        verify(snsClient, times(2)).subscribe(any(SubscribeRequest.class));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(1, rows.getValue().size());
+        assertArrayEquals(new Object[]{"ann@example.com", "jpg,png"}, rows.getValue().get(0));
+    }
+
+    @Test
+    void subscribeAll_ShouldReportInvalidAndDuplicateAddressesWithoutCallingSns() {
+        ResponseEntity<List<SubscriptionResult>> response = service.subscribeAll(List.of(
+                new SubscriptionRequest("not-an-address", List.of()),
+                new SubscriptionRequest("ann@example.com", List.of("jpg\"")),
+                new SubscriptionRequest("ann@example.com", List.of("jpg"))));
+
+        List<SubscriptionResult> results = response.getBody();
+        assertEquals("Invalid email address", results.get(0).getMessage());
+        assertEquals("Message types must be image extensions", results.get(1).getMessage());
+        assertTrue(results.get(2).isSubscribed());
+        verify(snsClient, times(1)).subscribe(any(SubscribeRequest.class));
+    }
+
+    @Test
+    void subscribeAll_ShouldReportSnsFailuresPerAddress() {
+        when(snsClient.subscribe(any(SubscribeRequest.class))).thenAnswer(invocation -> {
+            SubscribeRequest request = invocation.getArgument(0);
+            if (request.endpoint().startsWith("bob")) {
+                throw SnsException.builder().message("Rate exceeded").build();
+            }
+            return null;
+        });
+
+        List<SubscriptionResult> results = service.subscribeAll(List.of(
+                new SubscriptionRequest("ann@example.com", List.of("jpg")),
+                new SubscriptionRequest("bob@example.com", List.of("png")))).getBody();
+
+        assertTrue(results.get(0).isSubscribed());
+        assertFalse(results.get(1).isSubscribed());
+        assertTrue(results.get(1).getMessage().contains("Rate exceeded"));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 1));
+    }
+
+    @Test
+    void subscribeAll_ShouldFailAddressesWithMessageTypes_WhenInsertFails() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        List<SubscriptionResult> results = service.subscribeAll(List.of(
+                new SubscriptionRequest("ann@example.com", List.of("jpg")),
+                new SubscriptionRequest("bob@example.com", List.of()))).getBody();
+
+        assertFalse(results.get(0).isSubscribed());
+        assertTrue(results.get(1).isSubscribed());
+    }
+
+    @Test
+    void subscribeAll_ShouldRejectEmptyAndOversizedRequests() {
+        assertEquals(HttpStatus.BAD_REQUEST, service.subscribeAll(List.of()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, service.subscribeAll(
+                Collections.nCopies(4, new SubscriptionRequest("ann@example.com", List.of()))).getStatusCode());
+        verifyNoInteractions(snsClient, jdbcTemplate);
+    }
+
+    @Test
+    void parseCsv_ShouldSkipHeaderAndBlankLines() {
+        List<SubscriptionRequest> requests = SubscriptionImportService.parseCsv(
+                "email,messageTypes\r\nann@example.com, jpg,png\n\n\"bob@example.com\"\n");
+
+        assertEquals(List.of(
+                new SubscriptionRequest("ann@example.com", List.of("jpg", "png")),
+                new SubscriptionRequest("bob@example.com", List.of())), requests);
+    }
+}
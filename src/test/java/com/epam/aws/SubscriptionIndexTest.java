@@ -0,0 +1,135 @@
+package com.epam.aws;
+
+import com.epam.aws.model.SubscriptionIndexEntry;
+import com.epam.aws.repository.SubscriptionIndexRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.ListSubscriptionsByTopicRequest;
+import software.amazon.awssdk.services.sns.model.ListSubscriptionsByTopicResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.Subscription;
+import software.amazon.awssdk.services.sns.paginators.ListSubscriptionsByTopicIterable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SubscriptionIndexTest {
+
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:123456789012:uploads";
+
+    @Mock
+    private SnsClient snsClient;
+
+    @Mock
+    private SubscriptionIndexRepository repository;
+
+    private SubscriptionIndex subscriptionIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+        subscriptionIndex = new SubscriptionIndex(snsClient, repository, TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(subscriptionIndex, "topicArn", TOPIC_ARN);
+        when(snsClient.listSubscriptionsByTopicPaginator(any(ListSubscriptionsByTopicRequest.class)))
+                .thenAnswer(invocation -> new ListSubscriptionsByTopicIterable(snsClient, invocation.getArgument(0)));
+    }
+
+    @Test
+    void testFindSubscriptionArn_UsesIndexWithoutListingTopic() {
+        when(repository.findById("a@example.com"))
+                .thenReturn(Optional.of(new SubscriptionIndexEntry("a@example.com", arn("a"))));
+
+        assertEquals(Optional.of(arn("a")), subscriptionIndex.findSubscriptionArn("a@example.com"));
+
+        verifyNoInteractions(snsClient);
+    }
+
+    @Test
+    void testFindSubscriptionArn_DoesNotListTopicForUnknownAddresses() {
+        when(repository.findById("unknown@example.com")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), subscriptionIndex.findSubscriptionArn("unknown@example.com"));
+
+        verifyNoInteractions(snsClient);
+    }
+
+    @Test
+    void testFindSubscriptionArns_ReturnsOnlyIndexedAddresses() {
+        when(repository.findAllById(Set.of("a@example.com", "pending@example.com")))
+                .thenReturn(List.of(new SubscriptionIndexEntry("a@example.com", arn("a"))));
+
+        Map<String, String> found = subscriptionIndex.findSubscriptionArns(Set.of("a@example.com", "pending@example.com"));
+
+        assertEquals(Map.of("a@example.com", arn("a")), found);
+        verifyNoInteractions(snsClient);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSync_ReadsAllPagesAndAppliesDifferences() {
+        givenTopicPages(
+                List.of(subscription("new@example.com", arn("new")), subscription("same@example.com", arn("same"))),
+                List.of(subscription("moved@example.com", arn("moved-2")), subscription("pending@example.com", "PendingConfirmation")));
+        SubscriptionIndexEntry gone = new SubscriptionIndexEntry("gone@example.com", arn("gone"));
+        when(repository.findAll()).thenReturn(List.of(
+                new SubscriptionIndexEntry("same@example.com", arn("same")),
+                new SubscriptionIndexEntry("moved@example.com", arn("moved-1")),
+                gone));
+
+        subscriptionIndex.sync();
+
+        ArgumentCaptor<Collection<SubscriptionIndexEntry>> saved = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).saveAll(saved.capture());
+        assertEquals(List.of("moved@example.com", "new@example.com"), new ArrayList<>(saved.getValue()).stream()
+                .map(SubscriptionIndexEntry::getEmail).sorted().toList());
+        verify(repository).deleteAllInBatch(List.of(gone));
+        verify(snsClient, times(2)).listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class));
+    }
+
+    @Test
+    void testSync_KeepsIndexWhenListingFails() {
+        when(snsClient.listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class)))
+                .thenThrow(SnsException.builder().message("throttled").build());
+
+        subscriptionIndex.sync();
+
+        verify(repository, never()).findAll();
+        verify(repository, never()).deleteAllInBatch(any());
+    }
+
+    // Each page after the first is requested with the NextToken of the one before
+    @SafeVarargs
+    private void givenTopicPages(List<Subscription>... pages) {
+        when(snsClient.listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class))).thenAnswer(invocation -> {
+            ListSubscriptionsByTopicRequest request = invocation.getArgument(0);
+            assertEquals(TOPIC_ARN, request.topicArn());
+            int page = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+            return ListSubscriptionsByTopicResponse.builder()
+                    .subscriptions(pages[page])
+                    .nextToken(page + 1 < pages.length ? Integer.toString(page + 1) : null)
+                    .build();
+        });
+    }
+
+    private static Subscription subscription(String email, String subscriptionArn) {
+        return Subscription.builder().protocol("email").endpoint(email).subscriptionArn(subscriptionArn).build();
+    }
+
+    private static String arn(String id) {
+        return TOPIC_ARN + ":" + id;
+    }
+}
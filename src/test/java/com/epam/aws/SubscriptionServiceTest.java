@@ -12,6 +12,7 @@ import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.*;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -25,6 +26,9 @@ class SubscriptionServiceTest {
     @Mock
     private SubscriptionRepository subscriptionRepository;
 
+    @Mock
+    private SubscriptionIndex subscriptionIndex;
+
     @InjectMocks
     private SubscriptionService subscriptionService;
 
@@ -60,50 +64,25 @@ class SubscriptionServiceTest {
     @Test
     void unsubscribe_ShouldUnsubscribeUser_WhenEmailIsValid() {
         String email = "test@example.com";
-        Subscription subscription = Subscription.builder()
-                .subscriptionArn("arn:aws:sns:us-west-2:123456789012:test-subscription")
-                .endpoint(email)
-                .build();
-        ListSubscriptionsByTopicResponse mockResponse = ListSubscriptionsByTopicResponse.builder()
-                .subscriptions(List.of(subscription))
-                .build();
-
-        when(snsClient.listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class)))
-                .thenReturn(mockResponse);
+        String subscriptionArn = "arn:aws:sns:us-west-2:123456789012:test-subscription";
+        when(subscriptionIndex.findSubscriptionArn(email)).thenReturn(Optional.of(subscriptionArn));
 
         ResponseEntity<String> response = subscriptionService.unsubscribe(email);
 
-        verify(snsClient, times(1)).unsubscribe(any(UnsubscribeRequest.class));
+        verify(snsClient, times(1)).unsubscribe(UnsubscribeRequest.builder().subscriptionArn(subscriptionArn).build());
+        verify(subscriptionIndex).remove(email);
+        verify(snsClient, never()).listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class));
         assertEquals("Unsubscription request received. You will no longer receive notifications.", response.getBody());
     }
 
     @Test
-    void checkAndProcessSubscriptions_ShouldAddFilterToSubscription_WhenSubscriptionIsConfirmed() {
-        SubscriptionEntity entity = new SubscriptionEntity("test@example.com", List.of("jpg", "png"));
-        when(subscriptionRepository.findAll()).thenReturn(List.of(entity));
-
-        Subscription subscription = Subscription.builder()
-                .subscriptionArn("arn:aws:sns:us-west-2:123456789012:test-subscription")
-                .endpoint("test@example.com")
-                .build();
-        ListSubscriptionsByTopicResponse response = ListSubscriptionsByTopicResponse.builder()
-                .subscriptions(List.of(subscription))
-                .build();
-        when(snsClient.listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class)))
-                .thenReturn(response);
-
-        subscriptionService.checkAndProcessSubscriptions();
-
-        verify(snsClient, times(1)).setSubscriptionAttributes(any(SetSubscriptionAttributesRequest.class));
-        verify(subscriptionRepository, times(1)).delete(entity);
-    }
-
-    @Test
-    void checkAndProcessSubscriptions_ShouldDoNothing_WhenNoSubscriptionsFound() {
-        when(subscriptionRepository.findAll()).thenReturn(List.of());
+    void unsubscribe_ShouldReturnNotFound_WhenEmailIsNotIndexed() {
+        when(subscriptionIndex.findSubscriptionArn("unknown@example.com")).thenReturn(Optional.empty());
 
-        subscriptionService.checkAndProcessSubscriptions();
+        ResponseEntity<String> response = subscriptionService.unsubscribe("unknown@example.com");
 
-        verify(snsClient, never()).setSubscriptionAttributes(any(SetSubscriptionAttributesRequest.class));
+        verify(snsClient, never()).unsubscribe(any(UnsubscribeRequest.class));
+        verify(subscriptionIndex, never()).remove(anyString());
+        assertEquals(404, response.getStatusCode().value());
     }
 }
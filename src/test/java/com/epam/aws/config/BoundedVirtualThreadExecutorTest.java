@@ -0,0 +1,46 @@
+package com.epam.aws.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedVirtualThreadExecutorTest {
+
+    @Test
+    void testExecute_RejectsWithoutBlockingOnceThreadsAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        try (ExecutorConfig.BoundedVirtualThreadExecutor executor =
+                     new ExecutorConfig.BoundedVirtualThreadExecutor(new SimpleAsyncTaskExecutor("test-"), 1, 2)) {
+            for (int i = 0; i < 3; i++) {
+                executor.execute(() -> {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrent.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, maxConcurrent.get());
+        }
+    }
+}